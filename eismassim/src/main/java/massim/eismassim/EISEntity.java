@@ -7,21 +7,18 @@ import eis.iilang.Numeral;
 import eis.iilang.Parameter;
 import eis.iilang.Percept;
 import massim.eismassim.entities.CityEntity;
-import massim.eismassim.util.Conversions;
 import massim.protocol.*;
+import massim.protocol.codec.Framing;
+import massim.protocol.codec.MessageCodec;
+import massim.protocol.codec.Compression;
+import massim.protocol.codec.DeltaDecoder;
+import massim.protocol.codec.WireFormat;
 import massim.protocol.messagecontent.*;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
 import java.io.*;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -38,6 +35,9 @@ public abstract class EISEntity implements Runnable{
     private static boolean times = false; // annotate percepts with timestamp?
     private static boolean notifications = false; // send percepts as notifications?
     private static boolean queued = false;
+    private static WireFormat requestedFormat = WireFormat.XML; // format to ask the server for
+    private static boolean deltaRequested = false; // ask the server for delta-encoded percepts?
+    private static boolean compressionRequested = false; // ask the server for compressed frames?
 
     // config for this entity
     private String name;
@@ -48,6 +48,9 @@ public abstract class EISEntity implements Runnable{
     private boolean useXML = false;
     private boolean useIILang = false;
 
+    private WireFormat wireFormat = WireFormat.XML; // format confirmed by the server
+    private DeltaDecoder deltaDecoder; // decodes step percepts if the server confirmed delta percepts
+    private Compression compression; // compression confirmed by the server (if any)
     private boolean connected = false;
     private boolean connecting = false;
     private Socket socket;
@@ -97,11 +100,11 @@ public abstract class EISEntity implements Runnable{
     protected abstract Collection<Percept> simEndToIIL(SimEnd endPercept);
 
     /**
-     * Maps an IILang-action to XML.
+     * Maps an IILang-action to a MASSim protocol message.
      * @param action the action to transform
-     * @return the XML document (to send)
+     * @return the message (to send)
      */
-    protected abstract Document actionToXML(Action action);
+    protected abstract Message actionToMessage(Action action);
 
     /**
      * Sets the environment interface for all entities
@@ -147,6 +150,28 @@ public abstract class EISEntity implements Runnable{
         queued = true;
     }
 
+    /**
+     * Sets the wire format to request from the server for all entities.
+     * @param format the format to request after authentication
+     */
+    static void setWireFormat(WireFormat format) {
+        requestedFormat = format;
+    }
+
+    /**
+     * Enables delta-encoded step percepts for all entities.
+     */
+    static void enableDeltaPercepts() {
+        deltaRequested = true;
+    }
+
+    /**
+     * Enables compression of (large) frames for all entities.
+     */
+    static void enableCompression() {
+        compressionRequested = true;
+    }
+
     /**
      * Enables xml output for percepts.
      */
@@ -208,17 +233,17 @@ public abstract class EISEntity implements Runnable{
         while (!terminated && connected){
 
             // receive a message
-            Document doc;
+            byte[] data;
             try {
-                doc = receiveDocument();
-            } catch (IOException | SAXException | ParserConfigurationException e) {
+                data = receivePacket();
+            } catch (IOException e) {
                 e.printStackTrace();
                 releaseConnection();
                 break;
             }
 
             // process message
-            Message msg = Message.parse(doc, getPerceptTypes());
+            Message msg = wireFormat.codec(getPerceptTypes()).decode(data);
             if (msg == null) continue;
 
             if (msg.getContent() instanceof SimStart) {
@@ -232,6 +257,12 @@ public abstract class EISEntity implements Runnable{
             }
             else if (msg.getContent() instanceof RequestAction) {
                 RequestAction rac = (RequestAction) msg.getContent();
+                if (deltaDecoder != null) rac = deltaDecoder.decode(rac);
+                if (rac == null) {
+                    log("cannot decode delta percept " + ((RequestAction) msg.getContent()).getId());
+                    continue;
+                }
+                if (rac != msg.getContent()) msg = new Message(msg.getTimestamp(), rac);
                 long id = rac.getId();
 
                 requestActionPercepts.clear();
@@ -336,12 +367,12 @@ public abstract class EISEntity implements Runnable{
             }
         }
 
-        Document doc = actionToXML(action);
+        Message message = actionToMessage(action);
         try {
             assert currentActionId != lastUsedActionId;
-            sendDocument(doc);
+            sendMessage(message);
             lastUsedActionId = currentActionId;
-        } catch (TransformerException | IOException e) {
+        } catch (IOException e) {
             releaseConnection();
             throw new ActException(ActException.FAILURE, "sending action failed", e);
         }
@@ -355,7 +386,7 @@ public abstract class EISEntity implements Runnable{
         connecting = true;
         try {
             socket = new Socket(host, port);
-            in = socket.getInputStream();
+            in = new BufferedInputStream(socket.getInputStream());
             out = socket.getOutputStream();
 
             log("socket successfully created");
@@ -392,29 +423,42 @@ public abstract class EISEntity implements Runnable{
     private boolean authenticate() {
 
         // create and try to send message
-        Message authReq = new Message(null, new AuthRequest(username, password));
+        AuthRequest request = new AuthRequest(username, password,
+                requestedFormat == WireFormat.XML? null : requestedFormat.getName(), deltaRequested,
+                compressionRequested? Compression.DEFLATE : null);
+        wireFormat = WireFormat.XML; // authentication always uses XML
+        compression = null;
+        deltaDecoder = null;
         try {
-            sendDocument(authReq.toXML());
-        } catch (IOException | TransformerException e) {
+            sendMessage(new Message(null, request));
+        } catch (IOException e) {
             log(e.getMessage());
             return false;
         }
 
         // get responseMsg
-        Document xmlResponse;
+        byte[] xmlResponse;
         try {
-            xmlResponse = receiveDocument();
+            xmlResponse = receivePacket();
         }
-        catch (IOException | SAXException | ParserConfigurationException e) {
+        catch (IOException e) {
             e.printStackTrace();
             return false;
         }
-        Message responseMsg = Message.parse(xmlResponse);
+        Message responseMsg = wireFormat.codec(AuthResponse.class).decode(xmlResponse);
 
         // check for success
         if (responseMsg == null || !(responseMsg.getContent() instanceof AuthResponse)) return false;
         AuthResponse authResponse = (AuthResponse) responseMsg.getContent();
-        return authResponse.getResult() == AuthResponse.AuthenticationResult.OK;
+        if (authResponse.getResult() != AuthResponse.AuthenticationResult.OK) return false;
+        wireFormat = WireFormat.fromName(authResponse.getFormat());
+        if (wireFormat != requestedFormat) log("server does not support format " + requestedFormat.getName());
+        if (authResponse.isDelta()) deltaDecoder = new DeltaDecoder(); // the server starts over with a full percept
+        else if (deltaRequested) log("server does not support delta percepts");
+        if (Compression.DEFLATE.equals(authResponse.getCompression()))
+            compression = new Compression(Compression.DEFAULT_THRESHOLD);
+        else if (compressionRequested) log("server does not support compression");
+        return true;
     }
 
     /**
@@ -453,35 +497,27 @@ public abstract class EISEntity implements Runnable{
     }
 
     /**
-     * Sends a document.
-     * @param doc the document to be sent
-     * @throws IOException if the document could not be sent
+     * Sends a message in the current wire format.
+     * @param message the message to be sent
+     * @throws IOException if the message could not be encoded or sent
      */
-    private void sendDocument(Document doc) throws IOException, TransformerException {
-        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(out));
-        out.write(0);
-        out.flush();
-        if (useXML) log(Conversions.docToString(doc, true) + " sent");
+    private void sendMessage(Message message) throws IOException {
+        MessageCodec codec = wireFormat.codec(message.getContent().getClass());
+        byte[] data = codec.encode(message);
+        if (data == null) throw new IOException("Cannot encode message");
+        Framing.writeFrame(out, wireFormat, compression, data);
+        if (useXML && wireFormat == WireFormat.XML) log(new String(data, StandardCharsets.UTF_8) + " sent");
     }
 
     /**
-     * Receives a document from the server,
-     * @return the received document.
-     * @throws IOException if no document could be received
-     * @throws ParserConfigurationException if there's some bad problem with the DOM parser
-     * @throws SAXException if an error occurred during parsing
+     * Receives a message (in the current wire format) from the server,
+     * @return the raw bytes of the received message (without the terminating 0 byte or length header).
+     * @throws IOException if no message could be received
      */
-    private Document receiveDocument() throws IOException, ParserConfigurationException, SAXException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int read = in.read();
-        while (read != 0) {
-            if (read == -1) throw new IOException();
-            buffer.write(read);
-            read = in.read();
-        }
-        byte[] raw = buffer.toByteArray();
-        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(raw));
-        if (useXML) log(Conversions.docToString(doc, true) + " received");
-        return doc;
+    private byte[] receivePacket() throws IOException {
+        byte[] raw = Framing.readFrame(in, wireFormat, compression, Integer.MAX_VALUE);
+        if (raw == null) throw new IOException();
+        if (useXML && wireFormat == WireFormat.XML) log(new String(raw, StandardCharsets.UTF_8) + " received");
+        return raw;
     }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import eis.iilang.Action;
 import eis.iilang.EnvironmentState;
 import eis.iilang.IILElement;
 import eis.iilang.Percept;
+import massim.protocol.codec.WireFormat;
 import massim.protocol.scenario.city.Actions;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -158,6 +159,23 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
             Log.log("Percept queue enabled.");
         }
 
+        // wire format
+        WireFormat format = WireFormat.fromName(config.optString("format", WireFormat.XML.getName()));
+        EISEntity.setWireFormat(format);
+        Log.log("Wire format set to " + format.getName());
+
+        // delta percepts
+        if(config.optBoolean("delta", false)){
+            EISEntity.enableDeltaPercepts();
+            Log.log("Delta percepts enabled.");
+        }
+
+        // compression
+        if(config.optBoolean("compression", false)){
+            EISEntity.enableCompression();
+            Log.log("Compression enabled.");
+        }
+
         // parse entities
         JSONArray jsonEntities = config.optJSONArray("entities");
         if(jsonEntities == null) jsonEntities = new JSONArray();
@@ -8,7 +8,6 @@ import massim.protocol.messagecontent.*;
 import massim.protocol.scenario.city.data.*;
 import massim.protocol.scenario.city.percept.CityInitialPercept;
 import massim.protocol.scenario.city.percept.CityStepPercept;
-import org.w3c.dom.Document;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -229,7 +228,7 @@ public class CityEntity extends EISEntity {
     }
 
     @Override
-    public Document actionToXML(Action action) {
+    public Message actionToMessage(Action action) {
 
         // translate parameters to String
         List<String> parameters = new Vector<>();
@@ -251,6 +250,6 @@ public class CityEntity extends EISEntity {
                 new massim.protocol.messagecontent.Action(action.getName(), parameters.toArray(new String[parameters.size()]));
         massimAction.setID(currentActionId);
 
-        return new Message(null, massimAction).toXML();
+        return new Message(null, massimAction);
     }
 }
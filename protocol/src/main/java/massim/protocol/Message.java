@@ -1,12 +1,9 @@
 package massim.protocol;
 
+import massim.protocol.codec.XmlCodec;
 import org.w3c.dom.Document;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
 import javax.xml.bind.annotation.*;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import java.util.Arrays;
 
 /**
@@ -73,15 +70,8 @@ public class Message {
      */
     public static Message parse(Document doc, Class... context) {
         if (doc == null) return null;
-        try {
-            Class[] contextClasses = Arrays.copyOf(context, context.length + 1);
-            contextClasses[contextClasses.length - 1] = Message.class;
-            JAXBContext jc = JAXBContext.newInstance(contextClasses);
-            return (Message) jc.createUnmarshaller().unmarshal(doc);
-        } catch (JAXBException e) {
-            e.printStackTrace();
-        }
-        return null;
+        XmlCodec codec = XmlCodec.of(context);
+        return codec != null? codec.decode(doc) : null;
     }
 
     /**
@@ -90,18 +80,10 @@ public class Message {
      * @return the XML document
      */
     public Document toXML(Class... context){
-        try {
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            Class[] contextClasses = Arrays.copyOf(context, context.length + 2);
-            contextClasses[contextClasses.length - 2] = Message.class;
-            contextClasses[contextClasses.length - 1] = getContent().getClass();
-            JAXBContext jc = JAXBContext.newInstance(contextClasses);
-            jc.createMarshaller().marshal(this, document);
-            return document;
-        } catch (ParserConfigurationException | JAXBException e) {
-            e.printStackTrace();
-        }
-        return null;
+        Class[] contextClasses = Arrays.copyOf(context, context.length + 1);
+        contextClasses[contextClasses.length - 1] = getContent().getClass();
+        XmlCodec codec = XmlCodec.of(contextClasses);
+        return codec != null? codec.toDocument(this) : null;
     }
 
     /**
@@ -0,0 +1,291 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.MessageContent;
+
+import javax.xml.bind.annotation.*;
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts messages to and from a compact binary representation.
+ * The same JAXB-annotated classes are used as for XML: all fields annotated with {@link XmlAttribute},
+ * {@link XmlElement}, {@link XmlElementRef} or {@link XmlList} are written in a fixed order (fields of super classes
+ * first, then by name). Numbers are written as variable-length integers, strings as UTF-8.
+ * Values of abstract types (e.g. the content of a message) are preceded by the simple name of their actual class.
+ * Since the encoding of a list or record does not depend on its context, the bytes of fragments shared between
+ * messages can be reused (see {@link FragmentCache}).
+ * Codec instances are thread-safe.
+ */
+public class BinaryCodec implements MessageCodec {
+
+    private static Map<Set<Class>, BinaryCodec> codecs = new ConcurrentHashMap<>();
+    private static Map<Class, Field[]> properties = new ConcurrentHashMap<>();
+    private static Map<Class, Constructor> constructors = new ConcurrentHashMap<>();
+
+    private Map<String, Class> taggedClasses = new HashMap<>();
+
+    private BinaryCodec(Set<Class> classes) {
+        classes.forEach(c -> taggedClasses.put(c.getSimpleName(), c));
+    }
+
+    /**
+     * Retrieves the codec for the given content classes (creating it on first use).
+     * @param contentClasses specific message content classes to be known by the codec
+     * @return the codec for the given classes
+     */
+    public static BinaryCodec of(Class... contentClasses) {
+        Set<Class> classes = new HashSet<>(Arrays.asList(contentClasses));
+        XmlSeeAlso defaults = MessageContent.class.getAnnotation(XmlSeeAlso.class);
+        if (defaults != null) classes.addAll(Arrays.asList(defaults.value()));
+        return codecs.computeIfAbsent(classes, BinaryCodec::new);
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        return encode(message, null);
+    }
+
+    @Override
+    public byte[] encode(Message message, FragmentCache fragments) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        try {
+            writeObject(new DataOutputStream(buffer), Message.class, message, fragments);
+        } catch (IOException | IllegalAccessException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Encodes a single object (e.g. to compare data records by their content).
+     * @param value the object to encode (must not be null)
+     * @return the binary representation of the object or null if it could not be encoded
+     */
+    public byte[] encodeObject(Object value) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        try {
+            writeObject(new DataOutputStream(buffer), value.getClass(), value, null);
+        } catch (IOException | IllegalAccessException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] data) {
+        try {
+            return (Message) readObject(new DataInputStream(new ByteArrayInputStream(data)), Message.class);
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Class type, Type genericType, Object value, FragmentCache fragments)
+            throws IOException, IllegalAccessException {
+        if (type == int.class) writeVarLong(out, (Integer) value);
+        else if (type == long.class) writeVarLong(out, (Long) value);
+        else if (type == double.class) out.writeDouble((Double) value);
+        else if (type == boolean.class) out.writeBoolean((Boolean) value);
+        else if (type == String.class) writeString(out, (String) value);
+        else {
+            out.writeBoolean(value != null);
+            if (value == null) return;
+            if (type == Integer.class) writeVarLong(out, (Integer) value);
+            else if (type == Long.class) writeVarLong(out, (Long) value);
+            else if (type == Double.class) out.writeDouble((Double) value);
+            else if (type == Boolean.class) out.writeBoolean((Boolean) value);
+            else if (type.isEnum()) writeVarLong(out, ((Enum) value).ordinal());
+            else if (List.class.isAssignableFrom(type)) {
+                Class elementType = elementType(genericType);
+                List list = (List) value;
+                writeVarLong(out, list.size());
+                for (Object element : list) writeFragment(out, elementType, elementType, element, fragments);
+            }
+            else writeObject(out, type, value, fragments);
+        }
+    }
+
+    /**
+     * Writes a list or record value, using the cached encoding if the value is shared with other messages.
+     */
+    private void writeFragment(DataOutputStream out, Class type, Type genericType, Object value,
+                               FragmentCache fragments) throws IOException, IllegalAccessException {
+        if (fragments == null || value == null || isSimple(type)) {
+            writeValue(out, type, genericType, value, fragments);
+            return;
+        }
+        byte[] data = fragments.get(value);
+        if (data == null && fragments.reused(value)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+            writeValue(new DataOutputStream(buffer), type, genericType, value, fragments);
+            data = buffer.toByteArray();
+            fragments.put(value, data);
+        }
+        if (data != null) out.write(data);
+        else writeValue(out, type, genericType, value, fragments);
+    }
+
+    private Object readValue(DataInputStream in, Class type, Type genericType)
+            throws IOException, ReflectiveOperationException {
+        if (type == int.class) return (int) readVarLong(in);
+        if (type == long.class) return readVarLong(in);
+        if (type == double.class) return in.readDouble();
+        if (type == boolean.class) return in.readBoolean();
+        if (type == String.class) return readString(in);
+        if (!in.readBoolean()) return null;
+        if (type == Integer.class) return (int) readVarLong(in);
+        if (type == Long.class) return readVarLong(in);
+        if (type == Double.class) return in.readDouble();
+        if (type == Boolean.class) return in.readBoolean();
+        if (type.isEnum()) return type.getEnumConstants()[(int) readVarLong(in)];
+        if (List.class.isAssignableFrom(type)) {
+            Class elementType = elementType(genericType);
+            int size = readLength(in);
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) list.add(readValue(in, elementType, elementType));
+            return list;
+        }
+        return readObject(in, type);
+    }
+
+    /**
+     * Writes all properties of a (non-null) object. The actual class is written first if the given type is abstract.
+     */
+    private void writeObject(DataOutputStream out, Class type, Object value, FragmentCache fragments)
+            throws IOException, IllegalAccessException {
+        Class actualType = type;
+        if (Modifier.isAbstract(type.getModifiers())) {
+            actualType = value.getClass();
+            if (taggedClasses.get(actualType.getSimpleName()) != actualType)
+                throw new IOException("Class not known to codec: " + actualType.getName());
+            writeString(out, actualType.getSimpleName());
+        }
+        for (Field field : properties(actualType)) {
+            if (List.class.isAssignableFrom(field.getType()))
+                writeFragment(out, field.getType(), field.getGenericType(), field.get(value), fragments);
+            else writeValue(out, field.getType(), field.getGenericType(), field.get(value), fragments);
+        }
+    }
+
+    private Object readObject(DataInputStream in, Class type) throws IOException, ReflectiveOperationException {
+        Class actualType = type;
+        if (Modifier.isAbstract(type.getModifiers())) {
+            String tag = readString(in);
+            actualType = taggedClasses.get(tag);
+            if (actualType == null || !type.isAssignableFrom(actualType))
+                throw new IOException("Class not known to codec: " + tag);
+        }
+        Object value = constructor(actualType).newInstance();
+        for (Field field : properties(actualType))
+            field.set(value, readValue(in, field.getType(), field.getGenericType()));
+        return value;
+    }
+
+    /**
+     * @return true if values of the type are written directly (i.e. they cannot be fragments)
+     */
+    private static boolean isSimple(Class type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || Number.class.isAssignableFrom(type)
+                || type == Boolean.class;
+    }
+
+    private static Class elementType(Type listType) throws IOException {
+        if (listType instanceof ParameterizedType) {
+            Type arg = ((ParameterizedType) listType).getActualTypeArguments()[0];
+            if (arg instanceof Class) return (Class) arg;
+        }
+        throw new IOException("Cannot determine element type of " + listType);
+    }
+
+    private static Constructor constructor(Class type) {
+        return constructors.computeIfAbsent(type, t -> {
+            try {
+                Constructor c = t.getDeclaredConstructor();
+                c.setAccessible(true);
+                return c;
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("No default constructor for " + t.getName());
+            }
+        });
+    }
+
+    /**
+     * @return all (de)serialized fields of the given class in their wire order
+     */
+    private static Field[] properties(Class type) {
+        return properties.computeIfAbsent(type, t -> {
+            List<Field> result = new ArrayList<>();
+            Deque<Class> hierarchy = new ArrayDeque<>();
+            for (Class c = t; c != null && c != Object.class; c = c.getSuperclass()) hierarchy.push(c);
+            for (Class c : hierarchy) {
+                Arrays.stream(c.getDeclaredFields())
+                        .filter(f -> !Modifier.isStatic(f.getModifiers()))
+                        .filter(f -> f.isAnnotationPresent(XmlAttribute.class) || f.isAnnotationPresent(XmlElement.class)
+                                || f.isAnnotationPresent(XmlElementRef.class) || f.isAnnotationPresent(XmlList.class))
+                        .sorted(Comparator.comparing(Field::getName))
+                        .forEach(f -> {
+                            f.setAccessible(true);
+                            result.add(f);
+                        });
+            }
+            return result.toArray(new Field[result.size()]);
+        });
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+
+    /**
+     * Reads a size and checks that it is plausible for the remaining data (so that corrupt data cannot trigger huge
+     * allocations).
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.available() + 1) throw new IOException("Invalid length " + length);
+        return (int) length;
+    }
+
+    /**
+     * Writes the string's length + 1 (0 for null) followed by its UTF-8 bytes.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readLength(in) - 1;
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
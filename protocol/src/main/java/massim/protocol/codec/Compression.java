@@ -0,0 +1,76 @@
+package massim.protocol.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-frame deflate compression of one connection.
+ * Frames shorter than a threshold (or not getting any smaller) are sent uncompressed; compressed frames are marked in
+ * the frame header (see {@link Framing}).
+ * Instances are thread-safe, but should not be shared between connections.
+ */
+public class Compression {
+
+    /**
+     * The name of the compression as used in auth-request and auth-response messages.
+     */
+    public final static String DEFLATE = "deflate";
+
+    /**
+     * The default size (in bytes) from which on frames are compressed.
+     */
+    public final static int DEFAULT_THRESHOLD = 1024;
+
+    private int threshold;
+    private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[8192];
+
+    /**
+     * @param threshold the size (in bytes) from which on frames are compressed
+     */
+    public Compression(int threshold){
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param data the content of a frame
+     * @return the compressed data or null if the frame should be sent uncompressed
+     */
+    public synchronized byte[] compress(byte[] data){
+        if (data.length < threshold) return null;
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+            if (out.size() >= data.length) return null; // no gain
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data the content of a compressed frame
+     * @param maxLength the maximum length of the decompressed data
+     * @return the decompressed data or null if the data is invalid or would be longer than the given maximum
+     */
+    public synchronized byte[] decompress(byte[] data, int maxLength){
+        inflater.reset();
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxLength, 4 * data.length));
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) return null; // truncated
+                if (out.size() + n > maxLength) return null;
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+}
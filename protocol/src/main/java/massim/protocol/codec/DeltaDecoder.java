@@ -0,0 +1,61 @@
+package massim.protocol.codec;
+
+import massim.protocol.messagecontent.RequestAction;
+
+import java.util.*;
+
+/**
+ * Reconstructs full step percepts from the delta percepts created by a {@link DeltaEncoder}.
+ */
+public class DeltaDecoder {
+
+    private long lastId = -1;
+
+    /**
+     * The records of the last percept by category and key (in the order they were received).
+     */
+    private Map<String, LinkedHashMap<String, Object>> records = new HashMap<>();
+
+    /**
+     * Forgets the current view, e.g. after reconnection (the server will send a full percept next).
+     */
+    public synchronized void reset(){
+        lastId = -1;
+        records.clear();
+    }
+
+    /**
+     * Decodes the next percept.
+     * @param percept a full or delta percept
+     * @return the full percept or null if the percept is a delta to a percept that is not known (in that case, the
+     * percepts up to the next full percept cannot be decoded)
+     */
+    public synchronized RequestAction decode(RequestAction percept){
+        if (!percept.isDelta()) {
+            records.clear();
+            percept.getRecords().forEach((category, list) -> {
+                LinkedHashMap<String, Object> byKey = new LinkedHashMap<>();
+                list.forEach(record -> byKey.put(percept.getRecordKey(record), record));
+                records.put(category, byKey);
+            });
+            lastId = percept.getId();
+            return percept;
+        }
+        if (percept.getBase() != lastId || lastId == -1) {
+            reset();
+            return null;
+        }
+        percept.getRemovedRecords().forEach((category, keys) -> {
+            Map<String, Object> byKey = records.get(category);
+            if (byKey != null) keys.forEach(byKey::remove);
+        });
+        percept.getRecords().forEach((category, list) -> {
+            LinkedHashMap<String, Object> byKey = records.computeIfAbsent(category, c -> new LinkedHashMap<>());
+            list.forEach(record -> byKey.put(percept.getRecordKey(record), record));
+        });
+        lastId = percept.getId();
+        Map<String, List<?>> full = new HashMap<>();
+        records.forEach((category, byKey) -> full.put(category, new ArrayList<>(byKey.values())));
+        return percept.withRecords(full);
+    }
+}
@@ -0,0 +1,84 @@
+package massim.protocol.codec;
+
+import massim.protocol.messagecontent.RequestAction;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Reduces the step percepts sent to one agent to the records that changed since the previous percept.
+ * A full percept (keyframe) is sent periodically and whenever {@link #requireKeyframe()} has been called.
+ * Percepts that do not support delta encoding are passed through unchanged.
+ */
+public class DeltaEncoder {
+
+    private int keyframeInterval;
+    private int deltasSinceKeyframe = 0;
+    private boolean keyframeRequired = true;
+    private long lastId;
+
+    /**
+     * The fingerprints of the records of the last percept by category and key.
+     */
+    private Map<String, Map<String, byte[]>> lastRecords = new HashMap<>();
+
+    /**
+     * @param keyframeInterval the maximum number of percepts after which a full percept is sent again
+     */
+    public DeltaEncoder(int keyframeInterval){
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+    }
+
+    /**
+     * Makes sure the next percept is sent in full, e.g. after reconnection or if a previous percept got lost.
+     */
+    public synchronized void requireKeyframe(){
+        keyframeRequired = true;
+    }
+
+    /**
+     * Encodes the next percept.
+     * @param percept the full percept
+     * @param fingerprint computes a fingerprint for a record (equal for records with equal content)
+     * @return either the full percept or a delta percept relative to the previously encoded percept
+     */
+    public synchronized RequestAction encode(RequestAction percept, Function<Object, byte[]> fingerprint){
+        Map<String, List<?>> records = percept.getRecords();
+        if (records.isEmpty()) return percept;
+
+        Map<String, Map<String, byte[]>> currentRecords = new HashMap<>();
+        Map<String, List<?>> changed = new HashMap<>();
+        Map<String, List<String>> removed = new HashMap<>();
+        records.forEach((category, list) -> {
+            Map<String, byte[]> current = new HashMap<>();
+            Map<String, byte[]> last = lastRecords.getOrDefault(category, Collections.emptyMap());
+            List<Object> changedRecords = new ArrayList<>();
+            for (Object record : list) {
+                String key = percept.getRecordKey(record);
+                byte[] print = fingerprint.apply(record);
+                current.put(key, print);
+                if (!Arrays.equals(print, last.get(key))) changedRecords.add(record);
+            }
+            List<String> removedKeys = new ArrayList<>();
+            last.keySet().forEach(key -> {
+                if (!current.containsKey(key)) removedKeys.add(key);
+            });
+            currentRecords.put(category, current);
+            changed.put(category, changedRecords);
+            if (!removedKeys.isEmpty()) removed.put(category, removedKeys);
+        });
+
+        RequestAction result = null;
+        if (!keyframeRequired && deltasSinceKeyframe + 1 < keyframeInterval)
+            result = percept.toDelta(lastId, changed, removed);
+        if (result == null) {
+            result = percept;
+            deltasSinceKeyframe = 0;
+            keyframeRequired = false;
+        }
+        else deltasSinceKeyframe++;
+        lastRecords = currentRecords;
+        lastId = percept.getId();
+        return result;
+    }
+}
@@ -0,0 +1,44 @@
+package massim.protocol.codec;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the encoding of message fragments (lists and their records) that are shared between several messages,
+ * e.g. the facilities that are part of every agent's step percept. A cache must only be used with one format.
+ * Fragments are identified by object identity. A fragment is stored when it is encoded for the second time, so that
+ * data only used by a single message is not copied. Shared data must not be modified while the cache is in use.
+ * Instances are thread-safe.
+ */
+public class FragmentCache {
+
+    private Map<Object, byte[]> fragments = new IdentityHashMap<>();
+
+    /**
+     * @param value a (non-null) fragment
+     * @return the stored encoding of the fragment or null if it has not been stored yet
+     */
+    synchronized byte[] get(Object value){
+        return fragments.get(value);
+    }
+
+    /**
+     * Registers a use of the fragment.
+     * @param value a (non-null) fragment
+     * @return true if the fragment has been used before (i.e. its encoding should be stored)
+     */
+    synchronized boolean reused(Object value){
+        if (fragments.containsKey(value)) return true;
+        fragments.put(value, null);
+        return false;
+    }
+
+    /**
+     * Stores the encoding of a fragment.
+     * @param value the fragment
+     * @param data the fragment's encoding
+     */
+    synchronized void put(Object value, byte[] data){
+        fragments.put(value, data);
+    }
+}
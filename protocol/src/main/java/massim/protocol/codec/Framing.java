@@ -0,0 +1,141 @@
+package massim.protocol.codec;
+
+import java.io.*;
+
+/**
+ * Reads and writes message frames on blocking streams.
+ * XML messages are terminated by a 0 byte, binary messages are preceded by their length (4 bytes, big-endian).
+ * If compression is used, all frames are length-prefixed and the highest bit of the length marks compressed frames.
+ */
+public class Framing {
+
+    /**
+     * Marks a compressed frame in the length header.
+     */
+    public final static int COMPRESSED = 0x80000000;
+
+    /**
+     * Marks a frame that was skipped for being too long.
+     */
+    private final static byte[] SKIPPED = new byte[0];
+
+    /**
+     * @param format the wire format of a connection
+     * @param compression the compression of the connection (or null)
+     * @return true if frames are preceded by their length, false if they are terminated by a 0 byte
+     */
+    public static boolean isLengthPrefixed(WireFormat format, Compression compression) {
+        return format != WireFormat.XML || compression != null;
+    }
+
+    /**
+     * Reads the next frame that is not longer than the given maximum. Longer frames are skipped.
+     * @param in the stream to read from (should be buffered)
+     * @param format the format determining how frames are delimited
+     * @param compression the compression of the connection (or null if frames are never compressed)
+     * @param maxLength the maximum length of frames to return (compressed frames also after decompression)
+     * @return the (decompressed) content of the next frame or null if the stream ended
+     * @throws IOException if reading fails or a frame header is invalid
+     */
+    public static byte[] readFrame(InputStream in, WireFormat format, Compression compression, int maxLength)
+            throws IOException {
+        while (true) {
+            byte[] frame = isLengthPrefixed(format, compression)? readLengthPrefixed(in, compression, maxLength)
+                    : readDelimited(in, maxLength);
+            if (frame != SKIPPED) return frame;
+        }
+    }
+
+    /**
+     * Writes a frame.
+     * @param out the stream to write to (is flushed afterwards)
+     * @param format the format determining how frames are delimited
+     * @param compression the compression of the connection (or null if frames are never compressed)
+     * @param data the content of the frame
+     * @throws IOException if writing fails
+     */
+    public static void writeFrame(OutputStream out, WireFormat format, Compression compression, byte[] data)
+            throws IOException {
+        if (!isLengthPrefixed(format, compression)) {
+            out.write(data);
+            out.write(0);
+        }
+        else {
+            byte[] compressed = compression != null? compression.compress(data) : null;
+            if (compressed != null) {
+                writeHeader(out, compressed.length | COMPRESSED);
+                out.write(compressed);
+            }
+            else {
+                writeHeader(out, data.length);
+                out.write(data);
+            }
+        }
+        out.flush();
+    }
+
+    private static byte[] readDelimited(InputStream in, int maxLength) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        boolean skipping = false;
+        int b;
+        while ((b = in.read()) != 0) {
+            if (b == -1) return null; // stream ended
+            if (skipping) continue;
+            if (buffer.size() >= maxLength) skipping = true;
+            else buffer.write(b);
+        }
+        return skipping? SKIPPED : buffer.toByteArray();
+    }
+
+    private static byte[] readLengthPrefixed(InputStream in, Compression compression, int maxLength)
+            throws IOException {
+        long header = readHeader(in);
+        if (header == -1) return null;
+        boolean compressed = (header & COMPRESSED) != 0;
+        if (compressed && compression == null) throw new IOException("Unexpected compressed frame");
+        int length = (int) (header & ~COMPRESSED);
+        if (length > maxLength) {
+            skipFully(in, length);
+            return SKIPPED;
+        }
+        byte[] frame = new byte[length];
+        new DataInputStream(in).readFully(frame);
+        if (!compressed) return frame;
+        byte[] data = compression.decompress(frame, maxLength);
+        return data != null? data : SKIPPED;
+    }
+
+    /**
+     * @return the (unsigned) frame header or -1 if the stream ended before the header
+     */
+    private static long readHeader(InputStream in) throws IOException {
+        long header = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = in.read();
+            if (b == -1) {
+                if (i == 0) return -1;
+                throw new EOFException();
+            }
+            header = (header << 8) | b;
+        }
+        return header;
+    }
+
+    private static void writeHeader(OutputStream out, int header) throws IOException {
+        out.write(header >>> 24);
+        out.write(header >>> 16);
+        out.write(header >>> 8);
+        out.write(header);
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) throw new EOFException();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
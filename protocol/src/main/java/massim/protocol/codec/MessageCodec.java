@@ -0,0 +1,32 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+
+/**
+ * Converts messages to and from their on-the-wire representation.
+ * Implementations are thread-safe.
+ */
+public interface MessageCodec {
+
+    /**
+     * @param message the message to encode
+     * @return the encoded message or null if it could not be encoded
+     */
+    byte[] encode(Message message);
+
+    /**
+     * Encodes a message reusing the encoding of fragments shared with other messages (if supported by the codec).
+     * @param message the message to encode
+     * @param fragments the cache of shared fragments (only used with codecs of the same format)
+     * @return the encoded message or null if it could not be encoded
+     */
+    default byte[] encode(Message message, FragmentCache fragments){
+        return encode(message);
+    }
+
+    /**
+     * @param data an encoded message
+     * @return the message or null if the data could not be decoded
+     */
+    Message decode(byte[] data);
+}
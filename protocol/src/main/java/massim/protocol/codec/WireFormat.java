@@ -0,0 +1,67 @@
+package massim.protocol.codec;
+
+import massim.protocol.messagecontent.Action;
+
+/**
+ * The formats messages may be exchanged in after authentication.
+ * Authentication itself always uses (0-terminated) XML.
+ */
+public enum WireFormat {
+
+    /**
+     * XML documents, each terminated by a 0 byte (default).
+     */
+    XML("xml"),
+
+    /**
+     * Binary encoded messages (see {@link BinaryCodec}), each prefixed with its length.
+     */
+    BINARY("binary");
+
+    private String name;
+
+    WireFormat(String name){
+        this.name = name;
+    }
+
+    /**
+     * @return the name of the format as used in auth-request and auth-response messages
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * @param name the name of a format (may be null)
+     * @return the format with the given name or {@link #XML} if there is no such format
+     */
+    public static WireFormat fromName(String name){
+        for (WireFormat format : values()) {
+            if (format.name.equals(name)) return format;
+        }
+        return XML;
+    }
+
+    /**
+     * Retrieves the codec to use for this format.
+     * @param contentClasses specific message content classes to be known by the codec
+     * @return the codec or null if none could be created
+     */
+    public MessageCodec codec(Class... contentClasses){
+        switch (this){
+            case BINARY: return BinaryCodec.of(contentClasses);
+            default: return XmlCodec.of(contentClasses);
+        }
+    }
+
+    /**
+     * Retrieves the codec to decode action messages with, which may be faster than the general codec of this format.
+     * @return the codec or null if none could be created
+     */
+    public MessageCodec actionCodec(){
+        switch (this){
+            case BINARY: return BinaryCodec.of(Action.class);
+            default: return XmlActionCodec.of();
+        }
+    }
+}
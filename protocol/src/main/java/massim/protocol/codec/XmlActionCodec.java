@@ -0,0 +1,121 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.messagecontent.Action;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Decodes XML action messages in a single pass over the received bytes (with a streaming parser), without building
+ * any intermediate representation and without JAXB.
+ * Anything that is not exactly a plain action message is decoded by the {@link XmlCodec} instead, so the result is
+ * always what JAXB would return. Encoding is done by the {@link XmlCodec} as well.
+ * Codec instances are thread-safe.
+ */
+public class XmlActionCodec implements MessageCodec {
+
+    private final static XMLInputFactory factory = createFactory();
+
+    private XmlCodec xmlCodec;
+
+    private XmlActionCodec(XmlCodec xmlCodec) {
+        this.xmlCodec = xmlCodec;
+    }
+
+    /**
+     * @return a new codec or null if the underlying {@link XmlCodec} could not be created
+     */
+    public static XmlActionCodec of() {
+        XmlCodec xmlCodec = XmlCodec.of(Action.class);
+        return xmlCodec != null? new XmlActionCodec(xmlCodec) : null;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        return xmlCodec.encode(message);
+    }
+
+    @Override
+    public Message decode(byte[] data) {
+        Message message = null;
+        try {
+            message = read(data);
+        } catch (XMLStreamException | RuntimeException ignored) {} // let JAXB decide (or report) what it is
+        return message != null? message : xmlCodec.decode(data);
+    }
+
+    /**
+     * Reads a message of the form
+     * <pre>&lt;message timestamp="..." type="action"&gt;&lt;action id="..." type="..."&gt;&lt;p&gt;...&lt;/p&gt;...&lt;/action&gt;&lt;/message&gt;</pre>
+     * where all attributes except the type of the message are optional.
+     * @return the message or null if the data does not look exactly like that
+     */
+    private static Message read(byte[] data) throws XMLStreamException {
+        XMLStreamReader reader;
+        synchronized (factory) { // factories are not guaranteed to be thread-safe (readers are used by one thread only)
+            reader = factory.createXMLStreamReader(new ByteArrayInputStream(data));
+        }
+        try {
+            if (!isElement(reader, reader.nextTag(), "message")) return null;
+            Long timestamp = null;
+            String messageType = null;
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (!isPlain(reader.getAttributeNamespace(i))) return null;
+                switch (reader.getAttributeLocalName(i)) {
+                    case "timestamp": timestamp = Long.parseLong(reader.getAttributeValue(i)); break;
+                    case "type": messageType = reader.getAttributeValue(i); break;
+                    default: return null;
+                }
+            }
+            if (!Message.TYPE_ACTION.equals(messageType)) return null;
+
+            if (!isElement(reader, reader.nextTag(), "action")) return null;
+            String type = null;
+            long id = -1;
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (!isPlain(reader.getAttributeNamespace(i))) return null;
+                switch (reader.getAttributeLocalName(i)) {
+                    case "type": type = reader.getAttributeValue(i); break;
+                    case "id": id = Long.parseLong(reader.getAttributeValue(i)); break;
+                    default: return null;
+                }
+            }
+            List<String> params = new ArrayList<>();
+            int event;
+            while ((event = reader.nextTag()) == START_ELEMENT) {
+                if (!isElement(reader, event, "p")) return null;
+                params.add(reader.getElementText());
+            }
+            if (reader.nextTag() != END_ELEMENT) return null; // message must end after the action
+
+            Action action = new Action(type, params.toArray(new String[params.size()]));
+            action.setID(id);
+            return new Message(timestamp, action);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isElement(XMLStreamReader reader, int event, String name) {
+        return event == START_ELEMENT && isPlain(reader.getNamespaceURI()) && reader.getLocalName().equals(name);
+    }
+
+    private static boolean isPlain(String namespace) {
+        return namespace == null || namespace.isEmpty();
+    }
+}
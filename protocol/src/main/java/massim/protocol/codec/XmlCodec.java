@@ -0,0 +1,333 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.messagecontent.RequestAction;
+import org.w3c.dom.Document;
+
+import javax.xml.bind.*;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Converts messages to and from XML.
+ * The JAXB context is created only once per set of content classes and marshallers and unmarshallers are pooled, as
+ * creating them is expensive (while using them is not thread-safe).
+ * The records of (full) step percepts (see {@link RequestAction#getRecords()}) can be marshalled as fragments and
+ * reused for other percepts (see {@link FragmentCache}). Since messages do not use any namespaces, the XML of a record
+ * does not depend on where it is placed. The rest of the percept is marshalled as usual and the records are inserted
+ * at the end of the percept's element.
+ * Codec instances are thread-safe.
+ */
+public class XmlCodec implements MessageCodec {
+
+    private static Map<Set<Class>, XmlCodec> codecs = new ConcurrentHashMap<>();
+    private static Map<Class, RecordLayout> layouts = new ConcurrentHashMap<>();
+
+    private JAXBContext context;
+    private Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+    private Queue<Marshaller> fragmentMarshallers = new ConcurrentLinkedQueue<>();
+    private Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+
+    private XmlCodec(Set<Class> classes) throws JAXBException {
+        context = JAXBContext.newInstance(classes.toArray(new Class[classes.size()]));
+    }
+
+    /**
+     * Retrieves the codec for the given content classes (creating it on first use).
+     * @param contentClasses specific message content classes to be known by the codec
+     * @return the codec for the given classes or null if no JAXB context could be created for them
+     */
+    public static XmlCodec of(Class... contentClasses) {
+        Set<Class> classes = new HashSet<>(Arrays.asList(contentClasses));
+        classes.add(Message.class);
+        XmlCodec codec = codecs.get(classes);
+        if (codec != null) return codec;
+        try {
+            codec = new XmlCodec(classes);
+        } catch (JAXBException e) {
+            e.printStackTrace();
+            return null;
+        }
+        XmlCodec previous = codecs.putIfAbsent(classes, codec);
+        return previous != null? previous : codec;
+    }
+
+    /**
+     * Retrieves the codec needed to encode the given message.
+     * @param message the message to encode later
+     * @return the codec for the message's content class
+     */
+    public static XmlCodec forMessage(Message message) {
+        return of(message.getContent().getClass());
+    }
+
+    /**
+     * Writes the XML representation of a message to a stream.
+     * @param message the message to encode
+     * @param out the stream to write to
+     * @throws JAXBException if the message cannot be marshalled
+     */
+    public void encode(Message message, OutputStream out) throws JAXBException {
+        Marshaller marshaller = marshallers.poll();
+        if (marshaller == null) marshaller = context.createMarshaller();
+        try {
+            marshaller.marshal(message, out);
+        } finally {
+            marshallers.add(marshaller);
+        }
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        try {
+            encode(message, out);
+        } catch (JAXBException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a message. The records of full step percepts are taken from the given cache (or stored there if they are
+     * used for the second time), everything else is marshalled as usual.
+     * @param message the message to encode
+     * @param fragments the cache of shared records (for this codec's format only)
+     * @return the encoded message or null if it could not be encoded
+     */
+    @Override
+    public byte[] encode(Message message, FragmentCache fragments) {
+        if (fragments == null || !(message.getContent() instanceof RequestAction)) return encode(message);
+        RequestAction content = (RequestAction) message.getContent();
+        if (content.isDelta()) return encode(message);
+        RecordLayout layout = layouts.get(content.getClass());
+        if (layout == null) {
+            layout = new RecordLayout(content.getClass(), content.getRecords().keySet());
+            layouts.put(content.getClass(), layout);
+        }
+        if (!layout.fits(content)) return encode(message);
+
+        // the percept without records, which are inserted before its end tag
+        Long timestamp = message.getTimestamp();
+        byte[] rest = encode(new Message(timestamp == -1? null : timestamp,
+                content.withRecords(Collections.emptyMap())));
+        if (rest == null) return null;
+        int insert = contentEndTag(rest);
+        if (insert == -1) return encode(message);
+
+        Marshaller marshaller = fragmentMarshallers.poll();
+        try {
+            if (marshaller == null) {
+                marshaller = context.createMarshaller();
+                marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(rest.length + 4096);
+            out.write(rest, 0, insert);
+            for (RecordLayout.Slot slot : layout.slots) {
+                List<?> records = (List<?>) slot.field.get(content);
+                if (records != null) out.write(encodeRecords(marshaller, slot, records, fragments));
+            }
+            out.write(rest, insert, rest.length - insert);
+            return out.toByteArray();
+        } catch (JAXBException | IllegalAccessException | java.io.IOException e) {
+            e.printStackTrace();
+            return encode(message);
+        } finally {
+            if (marshaller != null) fragmentMarshallers.add(marshaller);
+        }
+    }
+
+    /**
+     * Marshals a list of records (or takes it from the cache). Records are cached individually as well, since they
+     * may also be shared by lists that are not (e.g. the entities within the vision of each agent).
+     */
+    @SuppressWarnings("unchecked")
+    private static byte[] encodeRecords(Marshaller marshaller, RecordLayout.Slot slot, List<?> records,
+                                        FragmentCache fragments) throws JAXBException {
+        byte[] data = fragments.get(records);
+        if (data != null) return data;
+        boolean store = fragments.reused(records);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * records.size());
+        for (Object record : records) {
+            if (record == null) continue;
+            byte[] recordData = fragments.get(record);
+            if (recordData == null) {
+                boolean storeRecord = fragments.reused(record);
+                ByteArrayOutputStream recordOut = new ByteArrayOutputStream(256);
+                marshaller.marshal(new JAXBElement(slot.name, slot.elementType, record), recordOut);
+                recordData = recordOut.toByteArray();
+                if (storeRecord) fragments.put(record, recordData);
+            }
+            out.write(recordData, 0, recordData.length);
+        }
+        data = out.toByteArray();
+        if (store) fragments.put(records, data);
+        return data;
+    }
+
+    /**
+     * @param data a marshalled message
+     * @return the position of the end tag of the message's content or -1 if there is none (e.g. it is an empty tag)
+     */
+    private static int contentEndTag(byte[] data) {
+        int messageEnd = lastIndexOf(data, (byte) '<', data.length - 1);
+        int contentEnd = lastIndexOf(data, (byte) '<', messageEnd - 1);
+        return contentEnd != -1 && data[contentEnd + 1] == '/'? contentEnd : -1;
+    }
+
+    private static int lastIndexOf(byte[] data, byte value, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Marshals a message into a new DOM document.
+     * @param message the message to convert
+     * @return the document or null if it could not be created
+     */
+    public Document toDocument(Message message) {
+        Marshaller marshaller = marshallers.poll();
+        try {
+            if (marshaller == null) marshaller = context.createMarshaller();
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            marshaller.marshal(message, document);
+            return document;
+        } catch (ParserConfigurationException | JAXBException e) {
+            e.printStackTrace();
+        } finally {
+            if (marshaller != null) marshallers.add(marshaller);
+        }
+        return null;
+    }
+
+    /**
+     * Reads one message from a stream.
+     * @param in the stream containing (only) the XML message
+     * @return the message or null if the XML could not be parsed
+     */
+    public Message decode(InputStream in) {
+        Unmarshaller unmarshaller = unmarshallers.poll();
+        try {
+            if (unmarshaller == null) unmarshaller = context.createUnmarshaller();
+            Object result = unmarshaller.unmarshal(in);
+            if (result instanceof Message) return (Message) result;
+        } catch (JAXBException e) {
+            e.printStackTrace();
+        } finally {
+            if (unmarshaller != null) unmarshallers.add(unmarshaller);
+        }
+        return null;
+    }
+
+    @Override
+    public Message decode(byte[] data) {
+        return decode(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Converts a DOM document to a message.
+     * @param doc the XML message
+     * @return the message or null if the document could not be converted
+     */
+    public Message decode(Document doc) {
+        if (doc == null) return null;
+        Unmarshaller unmarshaller = unmarshallers.poll();
+        try {
+            if (unmarshaller == null) unmarshaller = context.createUnmarshaller();
+            Object result = unmarshaller.unmarshal(doc);
+            if (result instanceof Message) return (Message) result;
+        } catch (JAXBException e) {
+            e.printStackTrace();
+        } finally {
+            if (unmarshaller != null) unmarshallers.add(unmarshaller);
+        }
+        return null;
+    }
+
+    /**
+     * Where the records of a type of step percept are placed in its XML.
+     * Records can only be inserted at the end of the percept, so all record lists have to be marshalled after all
+     * other elements (except for elements that are empty in full percepts, e.g. the records removed by a delta).
+     */
+    private static class RecordLayout {
+
+        private List<Slot> slots = new ArrayList<>(); // in the order of marshalling
+        private List<Field> trailing = new ArrayList<>(); // fields of elements marshalled after the first record list
+        private boolean valid;
+
+        private RecordLayout(Class type, Set<String> categories) {
+            XmlType xmlType = (XmlType) type.getAnnotation(XmlType.class);
+            if (xmlType == null || categories.isEmpty()) return;
+            for (String property : xmlType.propOrder()) {
+                Field field = findField(type, property);
+                if (field == null) return;
+                field.setAccessible(true);
+                XmlElement element = field.getAnnotation(XmlElement.class);
+                String name = element == null || element.name().equals("##default")? property : element.name();
+                Type genericType = field.getGenericType();
+                if (categories.contains(name) && List.class.isAssignableFrom(field.getType())
+                        && genericType instanceof ParameterizedType) {
+                    Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                    if (!(elementType instanceof Class)) return;
+                    slots.add(new Slot(field, new QName(name), (Class) elementType));
+                }
+                else if (!slots.isEmpty()) trailing.add(field);
+            }
+            valid = slots.size() == categories.size();
+        }
+
+        private static Field findField(Class type, String name) {
+            for (Class c = type; c != null; c = c.getSuperclass()) {
+                try {
+                    return c.getDeclaredField(name);
+                } catch (NoSuchFieldException ignored) {}
+            }
+            return null;
+        }
+
+        /**
+         * @return true if the records of the percept can be inserted at the end of the rest of the percept
+         */
+        private boolean fits(RequestAction percept) {
+            if (!valid) return false;
+            try {
+                for (Field field : trailing) {
+                    Object value = field.get(percept);
+                    if (value != null && !(value instanceof List && ((List) value).isEmpty())) return false;
+                }
+            } catch (IllegalAccessException e) {
+                return false;
+            }
+            return true;
+        }
+
+        private static class Slot {
+
+            private Field field;
+            private QName name;
+            private Class elementType;
+
+            private Slot(Field field, QName name, Class elementType) {
+                this.field = field;
+                this.name = name;
+                this.elementType = elementType;
+            }
+        }
+    }
+}
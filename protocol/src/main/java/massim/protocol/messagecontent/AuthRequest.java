@@ -21,6 +21,15 @@ public class AuthRequest extends MessageContent {
     @XmlAttribute(name="password")
     private String password;
 
+    @XmlAttribute(name="format")
+    private String format;
+
+    @XmlAttribute(name="delta")
+    private Boolean delta;
+
+    @XmlAttribute(name="compression")
+    private String compression;
+
     /**
      * private constructor only intended for use by JAXB
      */
@@ -31,6 +40,42 @@ public class AuthRequest extends MessageContent {
         this.password = password;
     }
 
+    /**
+     * Creates an auth-request asking for messages in another wire format after authentication.
+     * @param username the name of the agent
+     * @param password the agent's password
+     * @param format the name of the requested wire format (see {@link massim.protocol.codec.WireFormat})
+     */
+    public AuthRequest(String username, String password, String format) {
+        this(username, password);
+        this.format = format;
+    }
+
+    /**
+     * Creates an auth-request asking for another wire format and/or delta-encoded percepts after authentication.
+     * @param username the name of the agent
+     * @param password the agent's password
+     * @param format the name of the requested wire format or null for the default
+     * @param delta whether to request delta-encoded step percepts
+     */
+    public AuthRequest(String username, String password, String format, boolean delta) {
+        this(username, password, format);
+        if (delta) this.delta = true;
+    }
+
+    /**
+     * Creates an auth-request that may additionally ask for compressed frames after authentication.
+     * @param username the name of the agent
+     * @param password the agent's password
+     * @param format the name of the requested wire format or null for the default
+     * @param delta whether to request delta-encoded step percepts
+     * @param compression the name of the requested compression (see {@link massim.protocol.codec.Compression}) or null
+     */
+    public AuthRequest(String username, String password, String format, boolean delta, String compression) {
+        this(username, password, format, delta);
+        this.compression = compression;
+    }
+
     public String getUsername(){
         return username;
     }
@@ -39,6 +84,27 @@ public class AuthRequest extends MessageContent {
         return password;
     }
 
+    /**
+     * @return the name of the requested wire format or null if the default (XML) shall be used
+     */
+    public String getFormat(){
+        return format;
+    }
+
+    /**
+     * @return true if the agent asks for delta-encoded step percepts
+     */
+    public boolean isDeltaRequested(){
+        return delta != null && delta;
+    }
+
+    /**
+     * @return the name of the requested compression or null if frames shall not be compressed
+     */
+    public String getCompression(){
+        return compression;
+    }
+
     @Override
     public String getType() {
         return Message.TYPE_AUTH_REQUEST;
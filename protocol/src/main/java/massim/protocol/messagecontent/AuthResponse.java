@@ -18,6 +18,15 @@ public class AuthResponse extends MessageContent {
     @XmlAttribute(name="result")
     private String result;
 
+    @XmlAttribute(name="format")
+    private String format;
+
+    @XmlAttribute(name="delta")
+    private Boolean delta;
+
+    @XmlAttribute(name="compression")
+    private String compression;
+
     /**
      * Private constructor only to be used by JAXB.
      */
@@ -36,6 +45,39 @@ public class AuthResponse extends MessageContent {
         }
     }
 
+    /**
+     * Creates an auth-response confirming the wire format to be used from now on.
+     * @param result the result of the authentication
+     * @param format the name of the wire format (see {@link massim.protocol.codec.WireFormat})
+     */
+    public AuthResponse(AuthenticationResult result, String format){
+        this(result);
+        this.format = format;
+    }
+
+    /**
+     * Creates an auth-response confirming the wire format and whether delta-encoded percepts are used.
+     * @param result the result of the authentication
+     * @param format the name of the wire format or null if the agent did not ask for one
+     * @param delta whether step percepts will be delta-encoded (or null if the agent did not ask for it)
+     */
+    public AuthResponse(AuthenticationResult result, String format, Boolean delta){
+        this(result, format);
+        this.delta = delta;
+    }
+
+    /**
+     * Creates an auth-response additionally confirming the compression of frames.
+     * @param result the result of the authentication
+     * @param format the name of the wire format or null if the agent did not ask for one
+     * @param delta whether step percepts will be delta-encoded (or null if the agent did not ask for it)
+     * @param compression the name of the compression to use or null if frames will not be compressed
+     */
+    public AuthResponse(AuthenticationResult result, String format, Boolean delta, String compression){
+        this(result, format, delta);
+        this.compression = compression;
+    }
+
     @Override
     public String getType() {
         return Message.TYPE_AUTH_RESPONSE;
@@ -50,6 +92,27 @@ public class AuthResponse extends MessageContent {
         }
     }
 
+    /**
+     * @return the name of the wire format confirmed by the server or null if the default (XML) is used
+     */
+    public String getFormat(){
+        return format;
+    }
+
+    /**
+     * @return true if the server will send delta-encoded step percepts
+     */
+    public boolean isDelta(){
+        return delta != null && delta;
+    }
+
+    /**
+     * @return the name of the compression confirmed by the server or null if frames are not compressed
+     */
+    public String getCompression(){
+        return compression;
+    }
+
     /**
      * Contains all possible results of an authentication.
      */
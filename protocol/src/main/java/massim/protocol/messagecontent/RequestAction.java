@@ -5,11 +5,17 @@ import massim.protocol.MessageContent;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A percept that is sent to an agent before each step.
  * Needs to be subclassed for each scenario.
  * Subclass needs to support JAXB annotations to be de/serialized via XML.
+ * Subclasses may support delta encoding (see {@link massim.protocol.codec.DeltaEncoder}) by overriding
+ * {@link #getRecords()}, {@link #getRecordKey(Object)}, {@link #getRemovedRecords()}, {@link #toDelta(long, Map, Map)}
+ * and {@link #withRecords(Map)}.
  */
 @XmlRootElement
 public abstract class RequestAction extends MessageContent {
@@ -20,6 +26,9 @@ public abstract class RequestAction extends MessageContent {
     @XmlAttribute
     private long deadline;
 
+    @XmlAttribute
+    private Long base;
+
     @Override
     public String getType(){
         return Message.TYPE_REQUEST_ACTION;
@@ -39,6 +48,71 @@ public abstract class RequestAction extends MessageContent {
         return deadline;
     }
 
+    /**
+     * @return true if this percept only contains the changes relative to a previous percept
+     */
+    public boolean isDelta(){
+        return base != null;
+    }
+
+    /**
+     * @return the action-id of the percept this (delta) percept is relative to or -1 if this is a full percept
+     */
+    public long getBase(){
+        return base == null? -1 : base;
+    }
+
+    /**
+     * Marks this percept as delta percept.
+     * @param base the action-id of the percept this percept is relative to
+     */
+    protected void setBase(long base){
+        this.base = base;
+    }
+
+    /**
+     * @return all records of this percept that may be delta-encoded by category (e.g. all shops), or an empty map if
+     * this percept does not support delta encoding
+     */
+    public Map<String, List<?>> getRecords(){
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @param record one of the records of this percept
+     * @return the name identifying the record within its category
+     */
+    public String getRecordKey(Object record){
+        return null;
+    }
+
+    /**
+     * @return the keys of all records removed since the base percept by category (only for delta percepts)
+     */
+    public Map<String, List<String>> getRemovedRecords(){
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Creates a delta percept containing all non-record data of this percept and the given records only.
+     * @param base the action-id of the percept the delta is relative to
+     * @param changed all records that were added or changed since the base percept by category
+     * @param removed the keys of all records that were removed since the base percept by category
+     * @return the delta percept or null if delta encoding is not supported
+     */
+    public RequestAction toDelta(long base, Map<String, List<?>> changed, Map<String, List<String>> removed){
+        return null;
+    }
+
+    /**
+     * Creates a full percept containing all non-record data of this percept and the given records.
+     * @param records all records by category
+     * @return the full percept or null if delta encoding is not supported
+     */
+    public RequestAction withRecords(Map<String, List<?>> records){
+        return null;
+    }
+
     /**
      * Adds action-id and deadline to this request-action percept.
      * @param id the action-id
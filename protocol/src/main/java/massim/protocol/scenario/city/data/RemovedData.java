@@ -0,0 +1,49 @@
+package massim.protocol.scenario.city.data;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Marks a record (e.g. a shop or job) that is not part of the percept anymore (in delta percepts).
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.NONE)
+public class RemovedData {
+
+    @XmlAttribute
+    private String type;
+
+    @XmlAttribute
+    private String name;
+
+    /**
+     * For JAXB
+     */
+    private RemovedData(){}
+
+    /**
+     * Constructor.
+     * @param type the kind of record (i.e. the name of its XML element)
+     * @param name the name of the record
+     */
+    public RemovedData(String type, String name){
+        this.type = type;
+        this.name = name;
+    }
+
+    /**
+     * @return the kind of the removed record
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the name of the removed record
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -2,13 +2,10 @@ package massim.protocol.scenario.city.percept;
 
 import massim.protocol.messagecontent.RequestAction;
 import massim.protocol.scenario.city.data.*;
-import massim.protocol.scenario.city.util.LocationUtil;
+import massim.protocol.scenario.city.util.SpatialIndex;
 
 import javax.xml.bind.annotation.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.*;
 
 /**
  * A regular percept that is sent each step in the City scenario.
@@ -17,7 +14,7 @@ import java.util.stream.Collectors;
 @XmlAccessorType(XmlAccessType.NONE)
 //@XmlAccessorOrder(XmlAccessOrder.ALPHABETICAL)
 @XmlType (propOrder={"simData","selfData","teamData","entityData","chargingStations","dumps","shops","storage","resourceNodes",
-        "wells","workshops","jobs","auctions","missions"})
+        "wells","workshops","jobs","auctions","missions","removed"})
 public class CityStepPercept extends RequestAction {
 
     // ID and deadline are inherited
@@ -36,6 +33,7 @@ public class CityStepPercept extends RequestAction {
     @XmlElement(name="job") private List<JobData> jobs;
     @XmlElement(name="auction") private List<AuctionJobData> auctions;
     @XmlElement(name="mission") private List<MissionData> missions;
+    @XmlElement(name="removed") private List<RemovedData> removed;
 
     private CityStepPercept(){} // for jaxb
 
@@ -70,28 +68,134 @@ public class CityStepPercept extends RequestAction {
                            Map<String, List<AuctionJobData>> auctionsPerTeam,
                            Map<String, List<MissionData>> missionsPerTeam,
                            int vision){
+        this(self, teamName, step, team,
+                new SpatialIndex<>(entities, EntityData::getLat, EntityData::getLon, vision),
+                shops, workshops, stations, dumps, storage,
+                new SpatialIndex<>(resourceNodes, FacilityData::getLat, FacilityData::getLon, vision),
+                new SpatialIndex<>(wells, FacilityData::getLat, FacilityData::getLon, vision),
+                regularJobs, auctionsPerTeam, missionsPerTeam, vision);
+    }
+
+    /**
+     * Constructor for percepts of many agents, which share the (once per step built) indexes of all located
+     * records. Entities, resource nodes and wells are filtered by the vision of the agent.
+     * @param self data of the entity receiving the percept
+     * @param teamName name of the entity/agent
+     * @param step current step
+     * @param team data of the team
+     * @param entities index of all entities
+     * @param shops all shops
+     * @param workshops all workshops
+     * @param stations all charging stations
+     * @param dumps all dumps
+     * @param storage data of all storage facilities containing the items for the team of the agent
+     * @param resourceNodes index of all resource nodes
+     * @param wells index of all wells
+     * @param regularJobs list of active regular jobs
+     * @param auctionsPerTeam map of all auctions by team (assigned auctions are only visible to the assigned team)
+     * @param missionsPerTeam mission jobs for each team
+     * @param vision the current vision of the entity
+     */
+    public CityStepPercept(EntityData self, String teamName, int step, TeamData team,
+                           SpatialIndex<EntityData> entities,
+                           List<ShopData> shops,
+                           List<WorkshopData> workshops,
+                           List<ChargingStationData> stations,
+                           List<DumpData> dumps,
+                           List<StorageData> storage,
+                           SpatialIndex<ResourceNodeData> resourceNodes,
+                           SpatialIndex<WellData> wells,
+                           List<JobData> regularJobs,
+                           Map<String, List<AuctionJobData>> auctionsPerTeam,
+                           Map<String, List<MissionData>> missionsPerTeam,
+                           int vision){
         simData = new SimData(step);
         teamData = team;
         selfData = self;
-        entityData = entities.stream()
-                .filter(e -> LocationUtil.calculateRange(e.getLat(), e.getLon(), self.getLat(), self.getLon()) <= vision)
-                .collect(Collectors.toList());;
+        entityData = entities.query(self.getLat(), self.getLon(), vision);
         this.shops = shops;
         this.workshops = workshops;
         this.chargingStations = stations;
         this.dumps = dumps;
         this.storage = storage;
-        this.resourceNodes = resourceNodes.stream() // filter nodes by visibility range
-                .filter(rn -> LocationUtil.calculateRange(rn.getLat(), rn.getLon(), self.getLat(), self.getLon()) <= vision)
-                .collect(Collectors.toList());
-        this.wells = wells.stream()
-                .filter(well -> LocationUtil.calculateRange(well.getLat(), well.getLon(), self.getLat(), self.getLon()) <= vision)
-                .collect(Collectors.toList());
+        this.resourceNodes = resourceNodes.query(self.getLat(), self.getLon(), vision); // filter by visibility range
+        this.wells = wells.query(self.getLat(), self.getLon(), vision);
         this.jobs = regularJobs;
         this.auctions = auctionsPerTeam.get(teamName);
         this.missions = missionsPerTeam.get(teamName);
     }
 
+    /**
+     * Creates a copy of the given percept (sharing all data) with other records.
+     * @param source the percept to copy id, deadline, simulation, self and team data from
+     * @param records the records to use by category (see {@link #getRecords()})
+     */
+    @SuppressWarnings("unchecked")
+    private CityStepPercept(CityStepPercept source, Map<String, List<?>> records){
+        finalize(source.getId(), source.getDeadline());
+        simData = source.simData;
+        selfData = source.selfData;
+        teamData = source.teamData;
+        entityData = (List<EntityData>) records.get("entity");
+        shops = (List<ShopData>) records.get("shop");
+        workshops = (List<WorkshopData>) records.get("workshop");
+        chargingStations = (List<ChargingStationData>) records.get("chargingStation");
+        dumps = (List<DumpData>) records.get("dump");
+        storage = (List<StorageData>) records.get("storage");
+        resourceNodes = (List<ResourceNodeData>) records.get("resourceNode");
+        wells = (List<WellData>) records.get("well");
+        jobs = (List<JobData>) records.get("job");
+        auctions = (List<AuctionJobData>) records.get("auction");
+        missions = (List<MissionData>) records.get("mission");
+    }
+
+    @Override
+    public Map<String, List<?>> getRecords() {
+        Map<String, List<?>> records = new LinkedHashMap<>();
+        records.put("entity", getEntityData());
+        records.put("shop", getShopData());
+        records.put("workshop", getWorkshops());
+        records.put("chargingStation", getChargingStations());
+        records.put("dump", getDumps());
+        records.put("storage", getStorage());
+        records.put("resourceNode", getResourceNodes());
+        records.put("well", getWells());
+        records.put("job", getJobs());
+        records.put("auction", getAuctions());
+        records.put("mission", getMissions());
+        return records;
+    }
+
+    @Override
+    public String getRecordKey(Object record) {
+        if (record instanceof EntityData) return ((EntityData) record).getName();
+        if (record instanceof FacilityData) return ((FacilityData) record).getName();
+        if (record instanceof JobData) return ((JobData) record).getId();
+        return null;
+    }
+
+    @Override
+    public Map<String, List<String>> getRemovedRecords() {
+        Map<String, List<String>> result = new HashMap<>();
+        if (removed != null)
+            removed.forEach(r -> result.computeIfAbsent(r.getType(), t -> new ArrayList<>()).add(r.getName()));
+        return result;
+    }
+
+    @Override
+    public RequestAction toDelta(long base, Map<String, List<?>> changed, Map<String, List<String>> removed) {
+        CityStepPercept delta = new CityStepPercept(this, changed);
+        delta.setBase(base);
+        delta.removed = new ArrayList<>();
+        removed.forEach((type, names) -> names.forEach(name -> delta.removed.add(new RemovedData(type, name))));
+        return delta;
+    }
+
+    @Override
+    public RequestAction withRecords(Map<String, List<?>> records) {
+        return new CityStepPercept(this, records);
+    }
+
     /**
      * @return information about the entity receiving the percept
      */
@@ -0,0 +1,146 @@
+package massim.protocol.scenario.city.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A uniform grid over the positions of a list of objects for finding all objects within a range of a location.
+ * Only the cells overlapping a query's range are examined, so a query costs about the number of objects nearby
+ * (if the cell size is close to the typical query range) instead of the number of all objects.
+ * Results are exactly the objects within range as computed by {@link LocationUtil#calculateRange}.
+ * @param <T> the type of the indexed objects
+ */
+public class SpatialIndex<T> {
+
+    private final static double EARTH_RADIUS = 6371e3;
+    private final static double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+
+    private List<T> items;
+    private double[] lats;
+    private double[] lons;
+    private double maxAbsLat;
+
+    // grid
+    private double minLat;
+    private double minLon;
+    private double cellLat;
+    private double cellLon;
+    private int rows;
+    private int cols;
+    private int[] cellStart; // items of cell c are cellItems[cellStart[c]] to cellItems[cellStart[c + 1] - 1]
+    private int[] cellItems; // indices of items, ascending within each cell
+
+    /**
+     * Creates a new index. The list must not be changed afterwards.
+     * @param items the objects to index
+     * @param lat the latitude of an object
+     * @param lon the longitude of an object
+     * @param cellSize the (minimum) size of a grid cell in meters, ideally the typical query range
+     */
+    public SpatialIndex(List<T> items, ToDoubleFunction<T> lat, ToDoubleFunction<T> lon, double cellSize) {
+        this.items = items;
+        int n = items.size();
+        lats = new double[n];
+        lons = new double[n];
+        minLat = Double.POSITIVE_INFINITY;
+        minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            lats[i] = lat.applyAsDouble(items.get(i));
+            lons[i] = lon.applyAsDouble(items.get(i));
+            minLat = Math.min(minLat, lats[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+            minLon = Math.min(minLon, lons[i]);
+            maxLon = Math.max(maxLon, lons[i]);
+        }
+        if (n == 0) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+        maxAbsLat = Math.max(Math.abs(minLat), Math.abs(maxLat));
+
+        // keep the number of cells proportional to the number of items
+        cellSize = Math.max(cellSize, 1);
+        while (true) {
+            cellLat = latitudeSpan(cellSize);
+            cellLon = longitudeSpan(cellSize, maxAbsLat);
+            rows = cellIndex(maxLat, minLat, cellLat) + 1;
+            cols = cellIndex(maxLon, minLon, cellLon) + 1;
+            if ((long) rows * cols <= 4L * n + 16) break;
+            cellSize *= 2;
+        }
+
+        // counting sort of the items by cell
+        cellStart = new int[rows * cols + 1];
+        int[] itemCell = new int[n];
+        for (int i = 0; i < n; i++) {
+            itemCell[i] = cellIndex(lats[i], minLat, cellLat) * cols + cellIndex(lons[i], minLon, cellLon);
+            cellStart[itemCell[i] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) cellStart[c + 1] += cellStart[c];
+        int[] next = Arrays.copyOf(cellStart, rows * cols);
+        cellItems = new int[n];
+        for (int i = 0; i < n; i++) cellItems[next[itemCell[i]]++] = i;
+    }
+
+    /**
+     * Finds all objects within range of a location.
+     * @param lat the latitude of the location
+     * @param lon the longitude of the location
+     * @param range the range in meters
+     * @return all objects with a distance of at most range to the location (in the order of the indexed list)
+     */
+    public List<T> query(double lat, double lon, double range) {
+        if (items.isEmpty() || range < 0) return new ArrayList<>();
+        double dLat = latitudeSpan(range);
+        double dLon = longitudeSpan(range, Math.max(maxAbsLat, Math.abs(lat) + dLat));
+        int rowFrom = clamp(cellIndex(lat - dLat, minLat, cellLat), rows);
+        int rowTo = clamp(cellIndex(lat + dLat, minLat, cellLat), rows);
+        int colFrom = clamp(cellIndex(lon - dLon, minLon, cellLon), cols);
+        int colTo = clamp(cellIndex(lon + dLon, minLon, cellLon), cols);
+
+        int[] found = new int[16];
+        int count = 0;
+        for (int row = rowFrom; row <= rowTo; row++) {
+            for (int c = row * cols + colFrom; c <= row * cols + colTo; c++) {
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                    int i = cellItems[k];
+                    if (LocationUtil.calculateRange(lats[i], lons[i], lat, lon) > range) continue;
+                    if (count == found.length) found = Arrays.copyOf(found, 2 * count);
+                    found[count++] = i;
+                }
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<T> result = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) result.add(items.get(found[k]));
+        return result;
+    }
+
+    /**
+     * @return the maximum latitude difference (in degrees) of two locations within the given distance
+     */
+    private static double latitudeSpan(double distance) {
+        return distance / METERS_PER_DEGREE;
+    }
+
+    /**
+     * @param absLat the maximum absolute latitude of both locations
+     * @return the maximum longitude difference (in degrees) of two locations within the given distance
+     */
+    private static double longitudeSpan(double distance, double absLat) {
+        double cos = Math.cos(Math.toRadians(Math.min(90, absLat)));
+        double sin = Math.sin(Math.min(Math.PI / 2, distance / (2 * EARTH_RADIUS)));
+        if (sin >= cos) return 360;
+        return Math.toDegrees(2 * Math.asin(sin / cos));
+    }
+
+    private static int cellIndex(double value, double min, double cellSpan) {
+        return (int) Math.floor((value - min) / cellSpan);
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+}
@@ -0,0 +1,103 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.messagecontent.Action;
+import massim.protocol.messagecontent.AuthRequest;
+import massim.protocol.scenario.city.data.*;
+import massim.protocol.scenario.city.percept.CityStepPercept;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * Test the binary codec.
+ */
+public class BinaryCodecTest {
+
+    @Test
+    public void encodesAndDecodesAuthRequests(){
+        Message source = new Message(System.currentTimeMillis(), new AuthRequest("Bob", "hello4", "binary"));
+        Message deserialized = BinaryCodec.of().decode(BinaryCodec.of().encode(source));
+
+        assert deserialized != null;
+        assert deserialized.getTimestamp().equals(source.getTimestamp());
+        assert deserialized.getType().equals(source.getType());
+        assert deserialized.getContent() instanceof AuthRequest;
+        AuthRequest request = (AuthRequest) deserialized.getContent();
+        assert request.getUsername().equals("Bob");
+        assert request.getPassword().equals("hello4");
+        assert request.getFormat().equals("binary");
+    }
+
+    @Test
+    public void encodesAndDecodesActions(){
+        Action action = new Action("give", "agentA2", "item0", "1");
+        action.setID(7);
+        Message source = new Message(null, action);
+        Message deserialized = BinaryCodec.of(Action.class).decode(BinaryCodec.of(Action.class).encode(source));
+
+        assert deserialized != null;
+        assert deserialized.getTimestamp() == -1;
+        Action received = (Action) deserialized.getContent();
+        assert received.getID() == 7;
+        assert received.getActionType().equals("give");
+        assert received.getParameters().equals(action.getParameters());
+    }
+
+    @Test
+    public void encodesAndDecodesPercepts(){
+        EntityData self = new EntityData(100, 250, 10, 300, 500, 1, 3,
+                new ActionData("goto", Arrays.asList("shop1"), "successful"), null,
+                Arrays.asList(new WayPointData(0, 51.48, -0.1)),
+                Arrays.asList(new ItemAmountData("item1", 2)), "agentA1", "A", "drone", 51.4805, -0.1009);
+        Map<String, List<AuctionJobData>> auctions = new HashMap<>();
+        Map<String, List<MissionData>> missions = new HashMap<>();
+        CityStepPercept percept = new CityStepPercept(self, "A", 42, new TeamData("A", 5000, 17),
+                Collections.singletonList(self), Collections.singletonList(new ShopData("shop1", 51.48, -0.1)),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>(), auctions, missions, 500);
+        percept.finalize(3, 12345);
+        Message source = new Message(System.currentTimeMillis(), percept);
+
+        MessageCodec codec = BinaryCodec.of(CityStepPercept.class);
+        byte[] data = codec.encode(source);
+        Message deserialized = codec.decode(data);
+
+        assert deserialized != null;
+        assert deserialized.getContent() instanceof CityStepPercept;
+        CityStepPercept received = (CityStepPercept) deserialized.getContent();
+        assert received.getId() == 3;
+        assert received.getDeadline() == 12345;
+        assert received.getSelfData().getName().equals("agentA1");
+        assert received.getSelfData().getLat() == 51.4805;
+        assert received.getTeamData().getMassium() == 5000;
+        assert received.getShopData().get(0).getName().equals("shop1");
+        assert received.getEntityData().size() == 1;
+
+        assert data.length < XmlCodec.forMessage(source).encode(source).length;
+    }
+
+    @Test
+    public void reusesSharedFragments(){
+        List<ShopData> shops = Arrays.asList(new ShopData("shop1", 51.48, -0.1), new ShopData("shop2", 51.49, -0.1));
+        FragmentCache fragments = new FragmentCache();
+        MessageCodec codec = BinaryCodec.of(CityStepPercept.class);
+        for (String name : Arrays.asList("agentA1", "agentA2", "agentA3")) {
+            EntityData self = new EntityData(100, 250, 10, 300, 500, 1, 3, null, null, new ArrayList<>(),
+                    new ArrayList<>(), name, "A", "drone", 51.4805, -0.1009);
+            CityStepPercept percept = new CityStepPercept(self, "A", 42, new TeamData("A", 5000, 17),
+                    Collections.singletonList(self), shops, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new HashMap<>(),
+                    new HashMap<>(), 500);
+            percept.finalize(1, 12345);
+            Message message = new Message(1000L, percept);
+
+            byte[] data = codec.encode(message, fragments);
+            assert Arrays.equals(data, codec.encode(message));
+            CityStepPercept received = (CityStepPercept) codec.decode(data).getContent();
+            assert received.getSelfData().getName().equals(name);
+            assert received.getShopData().get(1).getName().equals("shop2");
+        }
+        assert fragments.get(shops) != null;
+    }
+}
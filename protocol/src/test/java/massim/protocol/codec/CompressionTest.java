@@ -0,0 +1,49 @@
+package massim.protocol.codec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Test compressed framing.
+ */
+public class CompressionTest {
+
+    @Test
+    public void compressesLargeFramesOnly() throws IOException {
+        Compression compression = new Compression(100);
+        byte[] small = new byte[50];
+        byte[] large = new byte[10000];
+        Arrays.fill(large, (byte) 'a');
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Framing.writeFrame(out, WireFormat.XML, compression, small);
+        Framing.writeFrame(out, WireFormat.XML, compression, large);
+        byte[] written = out.toByteArray();
+        assert written.length < 4 + small.length + 4 + 1000;
+        assert (written[0] & 0x80) == 0; // first frame not compressed
+        assert (written[4 + small.length] & 0x80) != 0;
+
+        ByteArrayInputStream in = new ByteArrayInputStream(written);
+        assert Arrays.equals(Framing.readFrame(in, WireFormat.XML, compression, 65536), small);
+        assert Arrays.equals(Framing.readFrame(in, WireFormat.XML, compression, 65536), large);
+        assert Framing.readFrame(in, WireFormat.XML, compression, 65536) == null;
+    }
+
+    @Test
+    public void skipsFramesDecompressingBeyondMaximum() throws IOException {
+        Compression compression = new Compression(0);
+        byte[] large = new byte[100000];
+        byte[] next = "next".getBytes();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Framing.writeFrame(out, WireFormat.BINARY, compression, large);
+        Framing.writeFrame(out, WireFormat.BINARY, compression, next);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assert Arrays.equals(Framing.readFrame(in, WireFormat.BINARY, compression, 1000), next);
+    }
+}
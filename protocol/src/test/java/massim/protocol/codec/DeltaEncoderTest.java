@@ -0,0 +1,75 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.messagecontent.RequestAction;
+import massim.protocol.scenario.city.data.*;
+import massim.protocol.scenario.city.percept.CityStepPercept;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * Test delta encoding of step percepts.
+ */
+public class DeltaEncoderTest {
+
+    private EntityData self = new EntityData(100, 250, 10, 300, 500, 1, 3, null, null, new ArrayList<>(),
+            new ArrayList<>(), "agentA1", "A", "drone", 51.4805, -0.1009);
+
+    @Test
+    public void reconstructsPerceptsFromDeltas(){
+        DeltaEncoder encoder = new DeltaEncoder(10);
+        DeltaDecoder decoder = new DeltaDecoder();
+        MessageCodec codec = BinaryCodec.of(CityStepPercept.class);
+
+        CityStepPercept first = percept(1, new ShopData("shop1", 51.48, -0.1), new ShopData("shop2", 51.49, -0.1));
+        RequestAction sent = encoder.encode(first, BinaryCodec.of()::encodeObject);
+        assert !sent.isDelta();
+        decoder.decode(transmit(codec, sent));
+
+        CityStepPercept second = percept(2, new ShopData("shop1", 51.48, -0.1), new ShopData("shop3", 51.5, -0.1));
+        sent = encoder.encode(second, BinaryCodec.of()::encodeObject);
+        assert sent.isDelta();
+        assert sent.getBase() == 1;
+        assert ((CityStepPercept) sent).getShopData().size() == 1; // only shop3 is new
+        assert sent.getRemovedRecords().get("shop").equals(Collections.singletonList("shop2"));
+
+        CityStepPercept received = (CityStepPercept) decoder.decode(transmit(codec, sent));
+        assert received != null;
+        assert received.getId() == 2;
+        assert received.getShopData().size() == 2;
+        assert received.getShopData().get(0).getName().equals("shop1");
+        assert received.getShopData().get(1).getName().equals("shop3");
+        assert received.getSelfData().getName().equals("agentA1");
+    }
+
+    @Test
+    public void requiresKeyframeAfterLoss(){
+        DeltaEncoder encoder = new DeltaEncoder(10);
+        DeltaDecoder decoder = new DeltaDecoder();
+
+        decoder.decode(encoder.encode(percept(1, new ShopData("shop1", 51.48, -0.1)), BinaryCodec.of()::encodeObject));
+        encoder.encode(percept(2), BinaryCodec.of()::encodeObject); // lost
+        RequestAction third = encoder.encode(percept(3), BinaryCodec.of()::encodeObject);
+        assert decoder.decode(third) == null;
+
+        encoder.requireKeyframe();
+        RequestAction fourth = encoder.encode(percept(4), BinaryCodec.of()::encodeObject);
+        assert !fourth.isDelta();
+        assert decoder.decode(fourth) != null;
+    }
+
+    private CityStepPercept percept(long id, ShopData... shops){
+        CityStepPercept percept = new CityStepPercept(self, "A", (int) id, new TeamData("A", 5000, 17),
+                Collections.singletonList(self), Arrays.asList(shops),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>(), new HashMap<>(), new HashMap<>(), 500);
+        percept.finalize(id, 12345);
+        return percept;
+    }
+
+    private static RequestAction transmit(MessageCodec codec, RequestAction percept){
+        Message message = codec.decode(codec.encode(new Message(System.currentTimeMillis(), percept)));
+        return (RequestAction) message.getContent();
+    }
+}
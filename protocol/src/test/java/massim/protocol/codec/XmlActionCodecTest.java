@@ -0,0 +1,65 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.messagecontent.Action;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Test the streaming action decoder against JAXB.
+ */
+public class XmlActionCodecTest {
+
+    @Test
+    public void decodesEncodedActions(){
+        Action action = new Action("give", "agentA2", "item0", "1");
+        action.setID(42);
+        Message source = new Message(null, action);
+        assertSameAsJaxb(XmlCodec.forMessage(source).encode(source));
+
+        Message noParams = new Message(null, new Action("recharge"));
+        assertSameAsJaxb(XmlCodec.forMessage(noParams).encode(noParams));
+    }
+
+    @Test
+    public void decodesLikeJaxb(){
+        assertSameAsJaxb("<message type=\"action\" timestamp=\"17\"><action id=\"3\" type=\"goto\">"
+                + "<p>51.5</p>\n<p>-0.1</p></action></message>");
+        assertSameAsJaxb("<?xml version=\"1.0\"?><message type=\"action\"><action type=\"dump\"><p/><p> 1 </p>"
+                + "</action><!-- comment --></message>");
+        assertSameAsJaxb("<message type=\"action\"><action type=\"goto\" id=\"7\"><p>a&amp;b</p></action></message>");
+        assertSameAsJaxb("<message type=\"action\"><action/></message>");
+        // not handled by the streaming decoder itself
+        assertSameAsJaxb("<message type=\"action\"><action type=\"goto\" id=\"7\" foo=\"x\"><p>shop1</p></action></message>");
+        assertSameAsJaxb("<message type=\"action\"><action type=\"goto\" id=\" 7\"><p>shop1</p></action></message>");
+        assertSameAsJaxb("<message type=\"action\"><action type=\"goto\"><q>shop1</q></action></message>");
+        assertSameAsJaxb("<message><action type=\"goto\"><p>shop1</p></action></message>");
+    }
+
+    @Test
+    public void rejectsInvalidData(){
+        XmlActionCodec codec = XmlActionCodec.of();
+        assert codec.decode("<message type=\"action\"><action>".getBytes(StandardCharsets.UTF_8)) == null;
+        assert codec.decode(new byte[0]) == null;
+    }
+
+    private static void assertSameAsJaxb(String xml){
+        assertSameAsJaxb(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameAsJaxb(byte[] data){
+        Message expected = XmlCodec.of(Action.class).decode(data);
+        Message decoded = XmlActionCodec.of().decode(data);
+        assert expected != null && decoded != null;
+        assert decoded.getTimestamp().equals(expected.getTimestamp());
+        assert Objects.equals(decoded.getType(), expected.getType());
+        assert expected.getContent() instanceof Action && decoded.getContent() instanceof Action;
+        Action expectedAction = (Action) expected.getContent();
+        Action action = (Action) decoded.getContent();
+        assert action.getID() == expectedAction.getID();
+        assert Objects.equals(action.getActionType(), expectedAction.getActionType());
+        assert action.getParameters().equals(expectedAction.getParameters());
+    }
+}
@@ -0,0 +1,81 @@
+package massim.protocol.codec;
+
+import massim.protocol.Message;
+import massim.protocol.messagecontent.Action;
+import massim.protocol.scenario.city.data.*;
+import massim.protocol.scenario.city.percept.CityStepPercept;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * Test the cached XML codec.
+ */
+public class XmlCodecTest {
+
+    @Test
+    public void encodesAndDecodesActions(){
+
+        Action action = new Action("goto", "shop1");
+        action.setID(42);
+
+        Message source = new Message(null, action);
+        byte[] data = XmlCodec.forMessage(source).encode(source);
+        Message deserialized = XmlCodec.of(Action.class).decode(data);
+
+        assert deserialized != null;
+        assert deserialized.getContent() instanceof Action;
+
+        Action received = (Action) deserialized.getContent();
+        assert received.getID() == 42;
+        assert received.getActionType().equals("goto");
+        assert received.getParameters().equals(action.getParameters());
+    }
+
+    @Test
+    public void reusesCodecs(){
+        assert XmlCodec.of(Action.class) == XmlCodec.of(Action.class, Message.class);
+    }
+
+    @Test
+    public void splicedPerceptsDecodeLikeFullPercepts(){
+        List<ShopData> shops = Arrays.asList(new ShopData("shop1", 51.48, -0.1), new ShopData("shop2", 51.49, -0.1));
+        List<ChargingStationData> stations = Collections.singletonList(
+                new ChargingStationData("chargingStation1", 51.47, -0.11, 5));
+        List<WellData> wells = Collections.singletonList(new WellData("well1", 51.4805, -0.1008, "A", "wellType0", 40));
+        List<JobData> jobs = Collections.singletonList(new JobData("job1", "storage1", 1, 100, 500,
+                Collections.singletonList(new ItemAmountData("item0", 2)), null, "system"));
+        Map<String, List<MissionData>> missions = new HashMap<>();
+        missions.put("A", Collections.singletonList(new MissionData("mission1", "storage1", 1, 100, 500,
+                Collections.singletonList(new ItemAmountData("item1", 1)), 50, null, 0, null, "system", "m1")));
+        List<EntityData> entities = new ArrayList<>();
+        for (String name : Arrays.asList("agentA1", "agentA2", "agentB1")) {
+            entities.add(new EntityData(100, 250, 10, 300, 500, 1, 3, null, null, new ArrayList<>(),
+                    new ArrayList<>(), name, name.substring(5, 6), "drone", 51.4805, -0.1009));
+        }
+
+        XmlCodec codec = XmlCodec.of(CityStepPercept.class);
+        FragmentCache fragments = new FragmentCache();
+        for (EntityData self : entities) {
+            CityStepPercept percept = new CityStepPercept(self, self.getTeam(), 42, new TeamData(self.getTeam(), 5000, 17),
+                    entities, shops, new ArrayList<>(), stations, new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), wells, jobs, new HashMap<>(), missions, 500);
+            percept.finalize(1, 12345);
+            Message message = new Message(1000L, percept);
+
+            byte[] full = codec.encode(message);
+            byte[] spliced = codec.encode(message, fragments);
+            Message received = codec.decode(spliced);
+            assert received != null && received.getTimestamp() == 1000L;
+            // equal if the decoded percepts are marshalled the same way
+            assert Arrays.equals(codec.encode(received), codec.encode(codec.decode(full)));
+            CityStepPercept receivedPercept = (CityStepPercept) received.getContent();
+            assert receivedPercept.getSelfData().getName().equals(self.getName());
+            assert receivedPercept.getEntityData().size() == 3;
+            assert receivedPercept.getShopData().get(1).getName().equals("shop2");
+            assert receivedPercept.getWells().get(0).getName().equals("well1");
+            assert receivedPercept.getJobs().get(0).getId().equals("job1");
+        }
+        assert fragments.get(shops) != null;
+    }
+}
@@ -0,0 +1,42 @@
+package massim.protocol.scenario.city.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Test range queries of the spatial index.
+ */
+public class SpatialIndexTest {
+
+    @Test
+    public void findsSameObjectsAsFullScan(){
+        Random random = new Random(17);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            points.add(new double[]{51.45 + random.nextDouble() * .1, -0.2 + random.nextDouble() * .2});
+        SpatialIndex<double[]> index = new SpatialIndex<>(points, p -> p[0], p -> p[1], 500);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 51.44 + random.nextDouble() * .12, lon = -0.21 + random.nextDouble() * .22;
+            double range = random.nextInt(2000);
+            List<double[]> expected = points.stream()
+                    .filter(p -> LocationUtil.calculateRange(p[0], p[1], lat, lon) <= range)
+                    .collect(Collectors.toList());
+            assert index.query(lat, lon, range).equals(expected);
+        }
+    }
+
+    @Test
+    public void handlesEmptyAndSinglePoint(){
+        assert new SpatialIndex<double[]>(new ArrayList<>(), p -> p[0], p -> p[1], 100).query(0, 0, 100).isEmpty();
+        List<double[]> points = new ArrayList<>();
+        points.add(new double[]{10, 10});
+        SpatialIndex<double[]> index = new SpatialIndex<>(points, p -> p[0], p -> p[1], 0);
+        assert index.query(10, 10, 0).size() == 1;
+        assert index.query(11, 10, 1000).isEmpty();
+    }
+}
@@ -1,27 +1,31 @@
 package massim;
 
-import massim.config.TeamConfig;
+import massim.config.ServerConfig;
 import massim.protocol.Message;
-import massim.protocol.MessageContent;
+import massim.protocol.codec.BinaryCodec;
+import massim.protocol.codec.Compression;
+import massim.protocol.codec.DeltaEncoder;
+import massim.protocol.codec.FragmentCache;
+import massim.protocol.codec.Framing;
+import massim.protocol.codec.MessageCodec;
+import massim.protocol.codec.WireFormat;
 import massim.protocol.messagecontent.*;
 import massim.util.Log;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import org.json.JSONObject;
+
 import java.io.*;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Handles agent accounts and network connections to all agents.
@@ -34,25 +38,58 @@ class AgentManager {
     private long agentTimeout;
     private boolean disconnecting = false;
     private int maxPacketLength;
+    private int keyframeInterval;
+    private int compressionThreshold;
+    private boolean keepAlive;
+
+    /**
+     * The selector-based transport if configured, otherwise null (i.e. 2 threads per connected agent are used).
+     */
+    private NioTransport transport;
 
     /**
-     * If an agent's sendQueue is already "full", the oldest element will be removed before a new one is added
+     * Completes all outstanding actions of a step once its deadline has passed.
      */
-    private int sendBufferSize = 4;
+    private ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "step-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Runs the action handler of {@link #requestActions(Map, BiConsumer)}, so that handling an action does not hold up
+     * the threads serving the agent connections.
+     */
+    private ExecutorService actionHandlerExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "action-handler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Encoded fragments (e.g. facility lists) shared between the messages of the current step, for each wire format.
+     * Replaced at the beginning of each step, so that data of previous steps can be collected.
+     */
+    private volatile Map<WireFormat, FragmentCache> fragments = newFragmentCaches();
 
     /**
      * Creates a new agent manager responsible for sending and receiving messages.
-     * @param teams a list of all teams to configure the manager for
-     * @param agentTimeout the timeout to use for request-action messages (to wait for actions) in milliseconds
-     * @param maxPacketLength the maximum size of packets to <b>process</b> (they are received anyway, just not parsed
-     *                        in case they are too big)
+     * Uses the teams, the agent timeout (to wait for actions), the maximum size of packets to <b>process</b> (they are
+     * received anyway, just not parsed in case they are too big) and the transport settings of the given config.
+     * @param config the server config
+     * @throws IOException if the selector-based transport is configured but cannot be started
      */
-    AgentManager(List<TeamConfig> teams, long agentTimeout, int maxPacketLength) {
-        teams.forEach(team -> team.getAgentNames().forEach((name) -> {
+    AgentManager(ServerConfig config) throws IOException {
+        config.teams.forEach(team -> team.getAgentNames().forEach((name) -> {
             agents.put(name, new AgentProxy(name, team.getName(), team.getPassword(name)));
         }));
-        this.agentTimeout = agentTimeout;
-        this.maxPacketLength = maxPacketLength;
+        this.agentTimeout = config.agentTimeout;
+        this.maxPacketLength = config.maxPacketLength;
+        this.keyframeInterval = config.keyframeInterval;
+        this.compressionThreshold = config.compressionThreshold;
+        this.keepAlive = config.keepAlive;
+        if (ServerConfig.TRANSPORT_NIO.equals(config.transport))
+            transport = new NioTransport(config.selectorThreads, maxPacketLength);
     }
 
     /**
@@ -61,15 +98,32 @@ class AgentManager {
     void stop(){
         disconnecting = true;
         agents.values().forEach(AgentProxy::close);
+        if (transport != null) transport.stop();
+        deadlineTimer.shutdownNow();
+        actionHandlerExecutor.shutdownNow();
     }
 
     /**
      * Sets a new socket for the given agent that was just authenticated (again or for the first time).
      * @param s the new socket opened for the agent
+     * @param received bytes already read from the socket after the handshake (i.e. the beginning of the next frames)
      * @param agentName the name of the agent
+     * @param format the wire format negotiated for the connection
+     * @param delta whether the agent receives delta-encoded step percepts
+     * @param compressed whether frames are compressed (see {@link #acceptsCompression(String)})
      */
-    void handleNewConnection(Socket s, String agentName){
-        if (agents.containsKey(agentName)) agents.get(agentName).handleNewConnection(s);
+    void handleNewConnection(Socket s, byte[] received, String agentName, WireFormat format, boolean delta,
+                             boolean compressed){
+        if (agents.containsKey(agentName))
+            agents.get(agentName).handleNewConnection(s, received, format, delta, compressed);
+    }
+
+    /**
+     * @param compression the name of a compression requested by an agent (may be null)
+     * @return true if frames can be compressed that way
+     */
+    boolean acceptsCompression(String compression) {
+        return compressionThreshold >= 0 && Compression.DEFLATE.equals(compression);
     }
 
     /**
@@ -96,30 +150,71 @@ class AgentManager {
 
     /**
      * Uses the percepts to send a request-action message and waits for the action answers.
-     * {@link #agentTimeout} is used to limit the waiting time per agent.
+     * {@link #agentTimeout} is used as one deadline for the whole step, after which all missing actions are
+     * replaced by {@link Action#STD_NO_ACTION}. Agents that are not connected (or lose their connection while the
+     * server waits) do not get a deadline: their actions are replaced immediately, so that the step can continue as
+     * soon as all connected agents have answered.
      * @param percepts mapping from agent names to percepts of the current simulation state
+     * @param actionHandler receives each action as soon as it is available (before this method returns), one action
+     *                      at a time on a separate thread
      * @return mapping from agent names to actions received in response
      */
-    Map<String, Action> requestActions(Map<String, RequestAction> percepts) {
-        // each thread needs to countdown the latch when it finishes
-        CountDownLatch latch = new CountDownLatch(percepts.keySet().size());
-        Map<String, Action> resultMap = new ConcurrentHashMap<>();
-        percepts.forEach((agName, percept) -> {
-            // start a new thread to get each action
-            new Thread(() -> {
-                Action action = agents.get(agName).requestAction(percept);
-                resultMap.put(agName, action);
-                latch.countDown();
-            }).start();
-        });
+    Map<String, Action> requestActions(Map<String, RequestAction> percepts, BiConsumer<String, Action> actionHandler) {
+        fragments = newFragmentCaches();
+        // records are shared between percepts, so each one only needs to be fingerprinted once per step
+        Map<Object, byte[]> fingerprints = new IdentityHashMap<>();
+        BinaryCodec codec = BinaryCodec.of();
+        Function<Object, byte[]> fingerprint = record -> fingerprints.computeIfAbsent(record, codec::encodeObject);
+        Map<String, CompletableFuture<Action>> futureActions = new HashMap<>();
+        percepts.forEach((agName, percept) ->
+                futureActions.put(agName, agents.get(agName).requestAction(percept, fingerprint)));
+        ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> futureActions.forEach((agName, futureAction) -> {
+            if (futureAction.complete(Action.STD_NO_ACTION)) {
+                agents.get(agName).telemetry.timeouts.incrementAndGet();
+                Log.log(Log.Level.NORMAL, "No valid action available in time for agent " + agName + ".");
+            }
+        }), agentTimeout, TimeUnit.MILLISECONDS);
+        CompletableFuture<?>[] handledActions = futureActions.entrySet().stream()
+                .map(entry -> entry.getValue().thenAcceptAsync(
+                        action -> handleAction(actionHandler, entry.getKey(), action), actionHandlerExecutor))
+                .toArray(CompletableFuture[]::new);
         try {
-            latch.await();
+            CompletableFuture.allOf(handledActions).get();
         } catch (InterruptedException e) {
-            Log.log(Log.Level.ERROR, "Latch interrupted. Actions probably incomplete.");
+            Log.log(Log.Level.ERROR, "Interrupted while waiting for actions. Actions probably incomplete.");
+        } catch (ExecutionException e) {
+            Log.log(Log.Level.ERROR, "Actions could not be handled: " + e.getCause());
         }
+        deadline.cancel(false);
+        Map<String, Action> resultMap = new HashMap<>();
+        futureActions.forEach((agName, futureAction) -> resultMap.put(agName, futureAction.getNow(Action.STD_NO_ACTION)));
         return resultMap;
     }
 
+    /**
+     * Passes one action to the action handler. Errors are logged, so that they do not affect the actions of other agents.
+     * @param actionHandler the handler to call
+     * @param agName the name of the agent
+     * @param action the agent's action
+     */
+    private static void handleAction(BiConsumer<String, Action> actionHandler, String agName, Action action) {
+        try {
+            actionHandler.accept(agName, action);
+        } catch (RuntimeException e) {
+            Log.log(Log.Level.ERROR, "Cannot handle action " + action.getActionType() + " of agent " + agName + ": " + e);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return an empty fragment cache for each wire format
+     */
+    private static Map<WireFormat, FragmentCache> newFragmentCaches() {
+        Map<WireFormat, FragmentCache> caches = new EnumMap<>(WireFormat.class);
+        for (WireFormat format : WireFormat.values()) caches.put(format, new FragmentCache());
+        return caches;
+    }
+
     /**
      * Sends sim-end percepts to the agents.
      * @param finalPercepts mapping from agent names to sim-end percepts
@@ -132,11 +227,27 @@ class AgentManager {
         });
     }
 
+    /**
+     * @return the network telemetry of all agents (see {@link AgentTelemetry}) since the last reset, keyed by name
+     */
+    JSONObject getTelemetry() {
+        JSONObject json = new JSONObject();
+        agents.forEach((name, agent) -> json.put(name, agent.telemetry.toJSON()));
+        return json;
+    }
+
+    /**
+     * Removes the recorded telemetry of all agents.
+     */
+    void resetTelemetry() {
+        agents.values().forEach(agent -> agent.telemetry.reset());
+    }
+
     /**
      * Stores account info of an agent.
      * Receives messages from and sends messages to remote agents.
      */
-    private class AgentProxy {
+    private class AgentProxy implements NioTransport.FrameHandler {
 
         // things that do not change
         private String name;
@@ -147,13 +258,25 @@ class AgentManager {
         private Socket socket;
         private Thread sendThread;
         private Thread receiveThread;
+        private NioTransport.Connection connection;
+        private volatile boolean connected = false;
+        private WireFormat format = WireFormat.XML;
+        private MessageCodec actionCodec = format.actionCodec();
+        private DeltaEncoder deltaEncoder; // only if the agent asked for delta percepts
+        private Compression compression; // only if the agent asked for compression
+
+        // telemetry
+        private AgentTelemetry telemetry = new AgentTelemetry();
+        private volatile byte[] requestFrame; // the last request-action sent to the agent
+        private volatile long requestId = -1; // the action-id of requestFrame
+        private volatile long requestSentAt = 0; // when requestFrame was written completely (nano time) or 0
 
         // concurrency magic
         private AtomicLong messageCounter = new AtomicLong();
-        private LinkedBlockingDeque<Document> sendQueue = new LinkedBlockingDeque<>();
-        private Map<Long, CompletableFuture<Document>> futureActions = new ConcurrentHashMap<>();
+        private SendQueue sendQueue = new SendQueue(telemetry.queueWait);
+        private Map<Long, CompletableFuture<Action>> futureActions = new ConcurrentHashMap<>();
 
-        private Document lastSimStartMessage;
+        private Message lastSimStartMessage;
 
         /**
          * Creates a new instance with the given credentials.
@@ -172,38 +295,42 @@ class AgentManager {
          * @param percept the initial percept to forward
          */
         void handleInitialPercept(SimStart percept) {
-            lastSimStartMessage = new Message(System.currentTimeMillis(), percept).toXML();
+            lastSimStartMessage = new Message(System.currentTimeMillis(), percept);
+            DeltaEncoder encoder = deltaEncoder;
+            if (encoder != null) encoder.requireKeyframe();
             sendMessage(lastSimStartMessage);
         }
 
         /**
-         * Creates a request-action message and sends it to the agent.
-         * Should be called within a new thread, as it blocks up to {@link #agentTimeout} milliseconds.
+         * Creates a request-action message and sends it to the agent. Does not block.
+         * The returned future is completed when the agent's answer arrives. It is up to the caller to complete it
+         * (e.g. with {@link Action#STD_NO_ACTION}) if the agent does not answer in time.
          * @param percept the step percept to forward
-         * @return the action that was received by the agent (or {@link Action#STD_NO_ACTION})
+         * @param fingerprint computes fingerprints of percept records (for delta encoding)
+         * @return the future action of the agent
          */
-        Action requestAction(RequestAction percept) {
+        CompletableFuture<Action> requestAction(RequestAction percept, Function<Object, byte[]> fingerprint) {
+            if (!connected) {
+                telemetry.disconnected.incrementAndGet();
+                return CompletableFuture.completedFuture(Action.STD_NO_ACTION);
+            }
             long id = messageCounter.getAndIncrement();
             percept.finalize(id, System.currentTimeMillis() + agentTimeout);
-            CompletableFuture<Document> futureAction = new CompletableFuture<>();
+            CompletableFuture<Action> futureAction = new CompletableFuture<>();
             futureActions.put(id, futureAction);
-            sendMessage(new Message(System.currentTimeMillis(), percept).toXML());
-            try {
-                // wait for action to be received
-                Document doc = futureAction.get(agentTimeout, TimeUnit.MILLISECONDS);
-                Message msg = Message.parse(doc, Action.class);
-                if(msg != null){
-                    MessageContent content = msg.getContent();
-                    if(content instanceof Action) {
-                        return (Action) content;
-                    }
-                }
-            } catch (InterruptedException | ExecutionException e) {
-                Log.log(Log.Level.ERROR, "Interrupted while waiting for action.");
-            } catch (TimeoutException e) {
-                Log.log(Log.Level.NORMAL, "No valid action available in time for agent " + name + ".");
+            // forget the request as soon as it is answered or expired
+            futureAction.whenComplete((action, ex) -> futureActions.remove(id));
+            // the connection might have been lost before the future was registered
+            if (!connected && futureAction.complete(Action.STD_NO_ACTION)) telemetry.disconnected.incrementAndGet();
+            synchronized (this) {
+                // the delta has to refer to the last percept the agent will actually receive
+                dropActionRequest();
+                DeltaEncoder encoder = deltaEncoder;
+                RequestAction content = encoder != null? encoder.encode(percept, fingerprint) : percept;
+                requestId = id;
+                enqueue(new Message(System.currentTimeMillis(), content), true);
             }
-            return Action.STD_NO_ACTION;
+            return futureAction;
         }
 
         /**
@@ -212,90 +339,161 @@ class AgentManager {
          */
         void handleFinalPercept(SimEnd percept) {
             lastSimStartMessage = null; // now we can stop resending it
-            sendMessage(new Message(System.currentTimeMillis(), percept).toXML());
+            sendMessage(new Message(System.currentTimeMillis(), percept));
         }
 
         /**
          * Sets a new endpoint for sending and receiving messages. If a socket is already present, it is replaced and closed.
          * @param newSocket the new socket to use for this agent
+         * @param received bytes already read from the new socket that have not been processed yet
+         * @param newFormat the wire format to use on the new socket
+         * @param delta whether to send delta-encoded step percepts on the new socket
+         * @param compressed whether to compress frames on the new socket
          */
-        private void handleNewConnection(Socket newSocket){
+        private synchronized void handleNewConnection(Socket newSocket, byte[] received, WireFormat newFormat,
+                                                      boolean delta, boolean compressed){
             // potentially close old socket
             if (sendThread != null) sendThread.interrupt();
             if (receiveThread != null) receiveThread.interrupt();
+            if (connection != null) connection.abort();
             if (socket != null) try { socket.close(); } catch (IOException ignored) {}
             // set new socket and open new threads
             socket = newSocket;
+            try {
+                newSocket.setKeepAlive(keepAlive);
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Cannot enable keep-alive for agent " + name + ".");
+            }
+            format = newFormat;
+            actionCodec = newFormat.actionCodec();
+            deltaEncoder = delta? new DeltaEncoder(keyframeInterval) : null; // starts with a keyframe
+            compression = compressed? new Compression(compressionThreshold) : null;
             sendQueue.clear();
             // resend sim start message if available
-            if(lastSimStartMessage != null) sendQueue.addFirst(lastSimStartMessage);
+            if(lastSimStartMessage != null) enqueue(lastSimStartMessage, false);
+            SocketChannel channel = newSocket.getChannel();
+            if (transport != null && channel != null) {
+                // let the selector threads handle the connection
+                sendThread = null;
+                receiveThread = null;
+                try {
+                    connection = transport.register(channel, this, format, compression, received);
+                    connected = true;
+                } catch (IOException e) {
+                    Log.log(Log.Level.ERROR, "Cannot register connection of agent " + name + ".");
+                    connection = null;
+                    connected = false;
+                }
+                return;
+            }
+            connection = null;
+            connected = true;
             sendThread = new Thread(this::send);
             sendThread.start();
-            receiveThread = new Thread(this::receive);
+            receiveThread = new Thread(() -> receive(newSocket, received));
             receiveThread.start();
         }
 
+        @Override
+        public byte[] nextFrame() {
+            return sendQueue.poll();
+        }
+
+        @Override
+        public void handleFrame(byte[] frame) {
+            handleReceivedData(frame);
+        }
+
+        @Override
+        public void handleFrameWritten(byte[] frame, long nanos) {
+            telemetry.write.record(nanos);
+            if (frame == requestFrame) requestSentAt = System.nanoTime();
+        }
+
+        @Override
+        public void handleClosed(NioTransport.Connection closed) {
+            Log.log(Log.Level.DEBUG, "Connection of agent " + name + " closed.");
+            handleConnectionLost(closed);
+        }
+
+        /**
+         * Marks the agent as disconnected and completes all outstanding actions with no action, as the agent cannot
+         * answer anymore. The agent is connected again as soon as it authenticates again.
+         * Does nothing if the lost connection has already been replaced.
+         * @param lost the socket (blocking transport) or connection (nio transport) that has been lost
+         */
+        private void handleConnectionLost(Object lost) {
+            List<CompletableFuture<Action>> pending;
+            synchronized (this) { // same lock as handleNewConnection, so the check cannot be overtaken by a new login
+                if (disconnecting || (lost != socket && lost != connection)) return;
+                connected = false;
+                // actions requested afterwards see that the agent is not connected
+                pending = new ArrayList<>(futureActions.values());
+            }
+            pending.forEach(futureAction -> {
+                if (futureAction.complete(Action.STD_NO_ACTION)) telemetry.disconnected.incrementAndGet();
+            });
+            Log.log(Log.Level.NORMAL, "Agent " + name + " disconnected.");
+        }
+
+        /**
+         * Encodes a message in the wire format of the current connection.
+         * Fragments shared with the messages of other agents are only encoded once per step.
+         * @param message the message to encode
+         * @return the encoded message or null if it could not be encoded
+         */
+        private byte[] encode(Message message) {
+            return format.codec(message.getContent().getClass()).encode(message, fragments.get(format));
+        }
+
         /**
-         * Reads XML documents (0-terminated) from the socket. If any "packet" is bigger than
-         * {@link #maxPacketLength}, the read bytes are immediately discarded until the next 0 byte.
+         * Reads messages (0-terminated or length-prefixed, depending on wire format and compression) from the socket.
+         * If any "packet" is bigger than {@link #maxPacketLength}, it is discarded without being processed.
+         * @param s the socket to read from
+         * @param received bytes already read from the socket, which are processed first
          */
-        private void receive() {
-            DocumentBuilder docBuilder;
+        private void receive(Socket s, byte[] received) {
             InputStream in;
             try {
-                docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-                in = new BufferedInputStream(socket.getInputStream());
-
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream(maxPacketLength);
-                int readBytes = 0;
-                boolean skipping = false;
+                in = new BufferedInputStream(new SequenceInputStream(new ByteArrayInputStream(received),
+                        s.getInputStream()));
                 while (!disconnecting){
-                    int b = in.read();
-                    if (!skipping && b != 0) buffer.write(b);
-                    if(b == -1) break; // stream ended
-                    if (b == 0){
-                        if (skipping){
-                            skipping = false; // new packet next up
-                        }
-                        else {
-                            // document complete
-                            Document doc = docBuilder.parse(new ByteArrayInputStream(buffer.toByteArray()));
-                            handleReceivedDoc(doc);
-                            buffer = new ByteArrayOutputStream();
-                            readBytes = 0;
-                        }
-                    }
-                    if (readBytes++ >= maxPacketLength){
-                        buffer = new ByteArrayOutputStream();
-                        readBytes = 0;
-                        skipping = true;
-                    }
+                    byte[] frame = Framing.readFrame(in, format, compression, maxPacketLength);
+                    if (frame == null) break; // stream ended
+                    handleReceivedData(frame);
                 }
             } catch (IOException e) {
                 Log.log(Log.Level.ERROR, "Error receiving document. Stop receiving.");
-            } catch (ParserConfigurationException e) {
-                Log.log(Log.Level.ERROR, "Parser error. Stop receiving.");
-            } catch (SAXException e) {
-                e.printStackTrace();
             }
+            handleConnectionLost(s);
         }
 
         /**
-         * Handles one received document (from the remote agent).
-         * @param doc the document that needs to be processed
+         * Handles one received message (from the remote agent).
+         * @param data the document that needs to be processed
          */
-        private void handleReceivedDoc(Document doc) {
+        private void handleReceivedData(byte[] data) {
 
-            Message message = Message.parse(doc);
+            long start = System.nanoTime();
+            Message message = actionCodec.decode(data);
+            telemetry.actionParse.record(System.nanoTime() - start);
             if(message == null) {
                 Log.log(Log.Level.ERROR, "Received invalid message.");
                 return;
             }
             if(message.getContent() instanceof Action){
                 long actionID = ((Action) message.getContent()).getID();
-                if(actionID != -1 && futureActions.containsKey(actionID)){
-                    futureActions.get(actionID).complete(doc);
+                CompletableFuture<Action> futureAction = futureActions.get(actionID);
+                if(actionID != -1 && futureAction != null){
+                    if (futureAction.complete((Action) message.getContent())) {
+                        telemetry.actions.incrementAndGet();
+                        long sentAt = requestSentAt;
+                        // measured until the frame was received, i.e. without parsing
+                        if (actionID == requestId && sentAt != 0) telemetry.roundTrip.record(start - sentAt);
+                    }
                 }
+                else if(actionID >= 0 && actionID < messageCounter.get())
+                    Log.log(Log.Level.NORMAL, "Action " + actionID + " from " + name + " arrived too late.");
                 else Log.log(Log.Level.ERROR, "Invalid action id " + actionID + " from " + name);
             }
             else{
@@ -312,16 +510,12 @@ class AgentManager {
                     if (disconnecting && sendQueue.isEmpty()) { // we can stop when everything is sent (e.g. the bye message)
                         break;
                     }
-                    Document sendDoc = sendQueue.take();
-                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                    TransformerFactory.newInstance().newTransformer().transform(
-                            new DOMSource(sendDoc), new StreamResult(buffer));
+                    byte[] data = sendQueue.take();
                     // send packet
-                    OutputStream out = socket.getOutputStream();
-                    out.write(buffer.toByteArray());
-                    out.write(0);
-                    out.flush();
-                } catch (InterruptedException | TransformerException | IOException e) {
+                    long start = System.nanoTime();
+                    Framing.writeFrame(socket.getOutputStream(), format, compression, data);
+                    handleFrameWritten(data, System.nanoTime() - start);
+                } catch (InterruptedException | IOException e) {
                     Log.log(Log.Level.DEBUG, "Error writing to socket. Stop sending now.");
                     break;
                 }
@@ -332,7 +526,13 @@ class AgentManager {
          * Closes socket and stops threads (if they exist).
          */
         private void close() {
-            sendMessage(new Message(System.currentTimeMillis(), new Bye()).toXML());
+            sendMessage(new Message(System.currentTimeMillis(), new Bye()));
+            if (connection != null) {
+                connection.close();
+                connection.awaitClosed(5000); // give bye-message some time to be sent (but not too much)
+                connection.abort();
+                return;
+            }
             try {
                 if(sendThread!=null)
                     sendThread.join(5000); // give bye-message some time to be sent (but not too much)
@@ -349,18 +549,47 @@ class AgentManager {
         }
 
         /**
-         * Puts the given message into the send queue as soon as possible.
-         * @param message the message document to send
+         * Puts the given message into the send queue as soon as possible. A queued request-action is dropped.
+         * @param message the message to send
          */
-        private void sendMessage(Document message){
-            if(sendQueue.size() > sendBufferSize) try {
-                sendQueue.take();
-            } catch (InterruptedException ignored) {}
-            try {
-                sendQueue.put(message);
-            } catch (InterruptedException e) {
-                Log.log(Log.Level.ERROR, "Interrupted while trying to put message into queue.");
+        private synchronized void sendMessage(Message message){
+            dropActionRequest();
+            enqueue(message, false);
+        }
+
+        /**
+         * Drops the queued request-action (if any), as it is superseded by the next message.
+         */
+        private void dropActionRequest(){
+            if (!sendQueue.dropActionRequest()) return;
+            telemetry.drops.incrementAndGet();
+            Log.log(Log.Level.NORMAL, "Dropped request-action for " + name + " (" + sendQueue.getDropped()
+                    + " dropped in total).");
+            DeltaEncoder encoder = deltaEncoder;
+            // following delta percepts cannot be applied by the agent anymore
+            if (encoder != null) encoder.requireKeyframe();
+        }
+
+        /**
+         * Encodes the message in the wire format of the current connection and appends it to the send queue.
+         * @param message the message to send
+         * @param actionRequest whether the message is a request-action (which may be superseded later)
+         */
+        private void enqueue(Message message, boolean actionRequest){
+            long start = System.nanoTime();
+            byte[] data = encode(message);
+            telemetry.serialize.record(System.nanoTime() - start);
+            if (data == null) {
+                Log.log(Log.Level.ERROR, "Cannot serialize message for " + name + ".");
+                return;
+            }
+            if (actionRequest) {
+                requestSentAt = 0;
+                requestFrame = data;
             }
+            sendQueue.add(data, actionRequest);
+            NioTransport.Connection con = connection;
+            if (con != null) con.requestWrite();
         }
     }
 }
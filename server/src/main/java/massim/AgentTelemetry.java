@@ -0,0 +1,90 @@
+package massim;
+
+import massim.util.Histogram;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Network timings of one agent, aggregated over the steps of a simulation.
+ * The send side is measured for all messages, the remaining values for request-actions and their answers.
+ */
+class AgentTelemetry {
+
+    /**
+     * Time to encode a message.
+     */
+    final Histogram serialize = new Histogram();
+
+    /**
+     * Time a message spent in the send queue.
+     */
+    final Histogram queueWait = new Histogram();
+
+    /**
+     * Time to write a message to the socket.
+     */
+    final Histogram write = new Histogram();
+
+    /**
+     * Time from a request-action being written to the socket until the action arrived.
+     */
+    final Histogram roundTrip = new Histogram();
+
+    /**
+     * Time to decode a received action.
+     */
+    final Histogram actionParse = new Histogram();
+
+    /**
+     * The number of request-actions that were answered in time.
+     */
+    final AtomicLong actions = new AtomicLong();
+
+    /**
+     * The number of request-actions that were not answered in time (including dropped ones).
+     */
+    final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * The number of request-actions that were dropped before being sent (superseded by the next message).
+     */
+    final AtomicLong drops = new AtomicLong();
+
+    /**
+     * The number of request-actions that were not answered because the agent was not connected (or disconnected).
+     */
+    final AtomicLong disconnected = new AtomicLong();
+
+    /**
+     * Removes all recorded values (e.g. at the beginning of a new simulation).
+     */
+    void reset() {
+        serialize.reset();
+        queueWait.reset();
+        write.reset();
+        roundTrip.reset();
+        actionParse.reset();
+        actions.set(0);
+        timeouts.set(0);
+        drops.set(0);
+        disconnected.set(0);
+    }
+
+    /**
+     * @return all values (durations in ms)
+     */
+    JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("actions", actions.get());
+        json.put("timeouts", timeouts.get());
+        json.put("drops", drops.get());
+        json.put("disconnected", disconnected.get());
+        json.put("serialize", serialize.toJSON());
+        json.put("queueWait", queueWait.toJSON());
+        json.put("write", write.toJSON());
+        json.put("roundTrip", roundTrip.toJSON());
+        json.put("actionParse", actionParse.toJSON());
+        return json;
+    }
+}
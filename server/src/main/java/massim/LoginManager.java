@@ -1,25 +1,30 @@
 package massim;
 
+import massim.config.ServerConfig;
 import massim.protocol.Message;
+import massim.protocol.codec.Compression;
+import massim.protocol.codec.Framing;
+import massim.protocol.codec.WireFormat;
+import massim.protocol.codec.XmlCodec;
 import massim.protocol.messagecontent.AuthRequest;
 import massim.protocol.messagecontent.AuthResponse;
 import massim.util.Log;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
+import javax.xml.bind.JAXBException;
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Responsible for network actions.
+ * Accepted sockets are authenticated by a bounded pool of login threads. Each handshake has to be completed within a
+ * deadline (counted from accepting the socket), otherwise the socket is closed. If too many handshakes are pending,
+ * new sockets are closed right away.
  * Created in 2017.
  * @author ta10
  */
@@ -29,26 +34,53 @@ class LoginManager {
     private ServerSocket serverSocket;
     private Thread thread;
     private AgentManager agentManager;
+    private int maxPacketLength;
+    private long loginTimeout;
+
+    /**
+     * Performs the handshakes. The size of its queue limits the number of pending handshakes.
+     */
+    private ThreadPoolExecutor loginExecutor;
 
+    /**
+     * Closes sockets that did not complete their handshake in time.
+     */
+    private ScheduledThreadPoolExecutor deadlineTimer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "login-deadline");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Creates a new listener waiting for incoming connections.
-     * @param port the port on which to listen
-     * @param backlog the backlog of the socket
+     * Uses the port, backlog and login settings of the given config.
      * @param agentMng the agent connection manager
+     * @param config the server config
      * @throws IOException if socket with the given data cannot be opened
      */
-    LoginManager(AgentManager agentMng, int port, int backlog) throws IOException {
+    LoginManager(AgentManager agentMng, ServerConfig config) throws IOException {
         agentManager = agentMng;
-        serverSocket = new ServerSocket(port, backlog, null);
+        maxPacketLength = config.maxPacketLength;
+        loginTimeout = config.loginTimeout;
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+        loginExecutor = new ThreadPoolExecutor(config.loginThreads, config.loginThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.maxPendingLogins)), r -> {
+                    Thread t = new Thread(r, "login");
+                    t.setDaemon(true);
+                    return t;
+                });
+        // only the nio transport can use channel-backed sockets: their streams block each other (before Java 13),
+        // so the two threads of the blocking transport could not read and write at the same time
+        serverSocket = ServerConfig.TRANSPORT_NIO.equals(config.transport)?
+                ServerSocketChannel.open().socket() : new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(config.port), config.backlog);
         thread = new Thread(() -> {
             while (!stopped) {
                 try {
                     Log.log(Log.Level.DEBUG, "Waiting for connection...");
                     Socket s = serverSocket.accept();
                     Log.log(Log.Level.DEBUG,"Got a connection.");
-                    Thread t = new Thread(() -> handleSocket(s));
-                    t.start();
+                    submitHandshake(s);
                 } catch (IOException e) {
                     Log.log(Log.Level.DEBUG,"Stop listening");
                 }
@@ -70,6 +102,8 @@ class LoginManager {
         try {
             stopped = true;
             serverSocket.close();
+            loginExecutor.shutdownNow();
+            deadlineTimer.shutdownNow();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -79,52 +113,92 @@ class LoginManager {
      * Creates and sends an auth-response message on the given socket.
      * @param s the socket to send on
      * @param result whether the authentication was successful
+     * @param format the name of the wire format to confirm (or null if the agent did not ask for one)
+     * @param delta whether delta-encoded percepts are confirmed (or null if the agent did not ask for them)
+     * @param compression the name of the compression to confirm (or null if frames will not be compressed)
      */
-    private void sendAuthResponse(Socket s, AuthResponse.AuthenticationResult result) {
+    private void sendAuthResponse(Socket s, AuthResponse.AuthenticationResult result, String format, Boolean delta,
+                                  String compression) {
         try {
-            OutputStream out = s.getOutputStream();
-            Document doc = new Message(System.currentTimeMillis(), new AuthResponse(result)).toXML();
-            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(out));
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            Message message = new Message(System.currentTimeMillis(), new AuthResponse(result, format, delta, compression));
+            XmlCodec.forMessage(message).encode(message, out);
             out.write(0);
-        } catch (IOException | TransformerException | TransformerFactoryConfigurationError e) {
+            out.flush();
+        } catch (IOException | JAXBException e) {
             Log.log(Log.Level.CRITICAL, "Auth response could not be sent.");
             e.printStackTrace();
         }
     }
 
+    /**
+     * Queues the handshake of a new socket and starts its deadline. Closes the socket if too many handshakes are
+     * already pending or if the handshake fails.
+     * @param s the new socket
+     */
+    private void submitHandshake(Socket s) {
+        AtomicBoolean finished = new AtomicBoolean(false);
+        ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> {
+            if (finished.compareAndSet(false, true)) {
+                Log.log(Log.Level.ERROR, "Authentication timed out: " + s.getInetAddress().getHostAddress());
+                closeSocket(s);
+            }
+        }, loginTimeout, TimeUnit.MILLISECONDS);
+        try {
+            loginExecutor.execute(() -> {
+                if (handleSocket(s, finished)) deadline.cancel(false);
+                else {
+                    finished.set(true);
+                    closeSocket(s);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.log(Log.Level.ERROR, "Too many pending logins. Rejected: " + s.getInetAddress().getHostAddress());
+            deadline.cancel(false);
+            closeSocket(s);
+        }
+    }
+
+    private static void closeSocket(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {}
+    }
+
     /**
      * Tries to perform agent authentication on the new socket.
      * @param s the socket to use
+     * @param finished set once the handshake is over (either here or by its deadline)
+     * @return true if the socket has been handed over to the agent manager, false if it is no longer needed
      */
-    private void handleSocket(Socket s) {
+    private boolean handleSocket(Socket s, AtomicBoolean finished) {
+        if (finished.get()) return false; // already timed out while waiting in the queue
         try {
-            InputStream is = s.getInputStream();
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            int b;
-            while (true) {
-                b = is.read();
-                if (b == 0) break; // message completely read
-                else if (b == -1) return; // stream ended
-                else buffer.write(b);
-            }
-            Document authDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
-                    new ByteArrayInputStream(buffer.toByteArray()));
-            Message receivedMsg = Message.parse(authDoc);
+            // bytes read past the auth-request belong to the connection handed to the agent manager
+            HandshakeInputStream in = new HandshakeInputStream(s.getInputStream());
+            byte[] frame = Framing.readFrame(in, WireFormat.XML, null, maxPacketLength);
+            if (frame == null) return false; // stream ended
+            Message receivedMsg = XmlCodec.of(AuthRequest.class).decode(frame);
             if(receivedMsg != null){
                 if(receivedMsg.getContent() != null && receivedMsg.getContent() instanceof AuthRequest) {
                     AuthRequest auth = (AuthRequest) receivedMsg.getContent();
                     Log.log(Log.Level.NORMAL, "got authentication: username=" + auth.getUsername() + " password="
                             + auth.getPassword() + " address=" + s.getInetAddress().getHostAddress());
                     // check credentials and act accordingly
+                    if (!finished.compareAndSet(false, true)) return false; // too late, socket already closed
                     if (agentManager.auth(auth.getUsername(), auth.getPassword())) {
-                        sendAuthResponse(s, AuthResponse.AuthenticationResult.OK);
-                        agentManager.handleNewConnection(s, auth.getUsername());
+                        WireFormat format = WireFormat.fromName(auth.getFormat());
+                        boolean compressed = agentManager.acceptsCompression(auth.getCompression());
+                        sendAuthResponse(s, AuthResponse.AuthenticationResult.OK,
+                                auth.getFormat() != null? format.getName() : null,
+                                auth.isDeltaRequested()? Boolean.TRUE : null,
+                                compressed? Compression.DEFLATE : null);
+                        agentManager.handleNewConnection(s, in.readAhead(), auth.getUsername(), format,
+                                auth.isDeltaRequested(), compressed);
+                        return true;
                     } else {
                         Log.log(Log.Level.ERROR, "Got invalid authentication from: " + s.getInetAddress().getHostAddress());
-                        sendAuthResponse(s, AuthResponse.AuthenticationResult.FAILED);
-                        try {
-                            s.close();
-                        } catch (IOException ignored) {}
+                        sendAuthResponse(s, AuthResponse.AuthenticationResult.FAILED, null, null, null);
                     }
                 }
                 else{
@@ -135,11 +209,28 @@ class LoginManager {
                 Log.log(Log.Level.ERROR, "Received wrong message, expected auth-request.");
             }
         } catch (IOException e) {
-            Log.log(Log.Level.ERROR, "Error while receiving authentication message");
-            e.printStackTrace();
-        } catch (ParserConfigurationException | SAXException e) {
-            Log.log(Log.Level.ERROR, "Error while parsing authentication message");
-            e.printStackTrace();
+            if (!finished.get()) {
+                Log.log(Log.Level.ERROR, "Error while receiving authentication message");
+                e.printStackTrace();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Buffers the handshake, so that it is not read byte by byte from the socket.
+     */
+    private static class HandshakeInputStream extends BufferedInputStream {
+
+        private HandshakeInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * @return the bytes that have been read from the socket but not from this stream yet
+         */
+        private synchronized byte[] readAhead() {
+            return Arrays.copyOfRange(buf, pos, count);
         }
     }
 }
@@ -0,0 +1,437 @@
+package massim;
+
+import massim.protocol.codec.Compression;
+import massim.protocol.codec.Framing;
+import massim.protocol.codec.WireFormat;
+import massim.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking transport for agent connections.
+ * A fixed number of selector threads serves all agent sockets, so the number of threads does not depend on the
+ * number of agents. Received bytes are split into frames (0-terminated or length-prefixed, depending on the wire format)
+ * straight out of a reusable buffer per selector thread, outgoing frames are written with gathering writes.
+ * Frames are (de)compressed on the selector threads if compression was negotiated for a connection.
+ */
+class NioTransport {
+
+    private final static int READ_BUFFER_SIZE = 16384;
+
+    /**
+     * The maximum number of frames to combine into one gathering write.
+     */
+    private final static int MAX_GATHER_FRAMES = 16;
+
+    private final static byte[] TERMINATOR = new byte[]{0};
+
+    private SelectorLoop[] loops;
+    private AtomicInteger nextLoop = new AtomicInteger();
+    private int maxPacketLength;
+
+    /**
+     * Creates and starts the selector threads.
+     * @param threads the number of selector threads to use
+     * @param maxPacketLength the maximum size of frames to <b>process</b> (bigger frames are skipped)
+     * @throws IOException if a selector cannot be opened
+     */
+    NioTransport(int threads, int maxPacketLength) throws IOException {
+        this.maxPacketLength = maxPacketLength;
+        loops = new SelectorLoop[Math.max(1, threads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(i);
+            loops[i].thread.start();
+        }
+    }
+
+    /**
+     * Hands a connected channel over to one of the selector threads.
+     * @param channel the (connected) channel of an agent
+     * @param handler the handler providing outgoing and processing incoming frames
+     * @param format the wire format determining how frames are delimited
+     * @param compression the compression of the connection (or null if frames are not compressed)
+     * @param received bytes already read from the channel (e.g. during the handshake) that belong to the connection
+     * @return the new connection
+     * @throws IOException if the channel cannot be switched to non-blocking mode
+     */
+    Connection register(SocketChannel channel, FrameHandler handler, WireFormat format, Compression compression,
+                        byte[] received) throws IOException {
+        channel.configureBlocking(false);
+        SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        Connection connection = new Connection(channel, handler, loop, Framing.isLengthPrefixed(format, compression),
+                compression, received);
+        loop.submit(connection::open);
+        return connection;
+    }
+
+    /**
+     * Stops all selector threads and closes all channels still registered.
+     */
+    void stop(){
+        Arrays.stream(loops).forEach(SelectorLoop::stop);
+    }
+
+    /**
+     * Callbacks of a connection. All methods are called from the connection's selector thread.
+     */
+    interface FrameHandler {
+
+        /**
+         * @return the next frame to send (without the terminating 0 byte) or null if nothing is left to send
+         */
+        byte[] nextFrame();
+
+        /**
+         * Processes one complete frame received from the remote side.
+         * @param frame the frame's content (without the terminating 0 byte)
+         */
+        void handleFrame(byte[] frame);
+
+        /**
+         * Called after a frame has been written to the socket completely.
+         * @param frame the frame as returned by {@link #nextFrame()}
+         * @param nanos the time from taking the frame until it was written completely
+         */
+        void handleFrameWritten(byte[] frame, long nanos);
+
+        /**
+         * Called once after the connection has been closed (locally or remotely).
+         * @param connection the connection that has been closed
+         */
+        void handleClosed(Connection connection);
+    }
+
+    /**
+     * One agent connection served by a selector thread.
+     */
+    class Connection {
+
+        private SocketChannel channel;
+        private FrameHandler handler;
+        private SelectorLoop loop;
+        private SelectionKey key;
+        private boolean lengthPrefixed;
+        private Compression compression;
+
+        // receiving
+        private byte[] received; // bytes read before the connection was opened (processed once it is)
+        private byte[] frame = new byte[1024];
+        private int frameLength = 0;
+        private boolean skipping = false;
+        private int headerBytes = 0; // number of bytes of the current length header read so far
+        private int expectedLength = 0; // the length of the current frame (if length-prefixed)
+        private boolean compressed = false; // whether the current frame is compressed
+
+        // sending
+        private ArrayDeque<ByteBuffer> outgoing = new ArrayDeque<>();
+        private ArrayDeque<PendingFrame> pending = new ArrayDeque<>(); // frames (partially) in outgoing
+        private ByteBuffer[] gather = new ByteBuffer[2 * MAX_GATHER_FRAMES];
+        private AtomicBoolean writeRequested = new AtomicBoolean();
+        private volatile boolean closing = false;
+        private CountDownLatch closed = new CountDownLatch(1);
+
+        private Connection(SocketChannel channel, FrameHandler handler, SelectorLoop loop, boolean lengthPrefixed,
+                           Compression compression, byte[] received){
+            this.channel = channel;
+            this.handler = handler;
+            this.loop = loop;
+            this.lengthPrefixed = lengthPrefixed;
+            this.compression = compression;
+            this.received = received;
+        }
+
+        /**
+         * Notifies the connection that new frames are available from its handler.
+         * May be called from any thread.
+         */
+        void requestWrite(){
+            if (writeRequested.compareAndSet(false, true)) loop.submit(this::enableWrite);
+        }
+
+        /**
+         * Sends all frames that are still available and closes the connection afterwards.
+         * May be called from any thread.
+         */
+        void close(){
+            closing = true;
+            loop.submit(this::enableWrite);
+        }
+
+        /**
+         * Waits for the connection to be closed.
+         * @param timeout the maximum time to wait in milliseconds
+         * @return true if the connection has been closed in time
+         */
+        boolean awaitClosed(long timeout){
+            try {
+                return closed.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Closes the channel immediately without sending anything else.
+         */
+        void abort(){
+            loop.submit(this::closeChannel);
+        }
+
+        private void open(){
+            try {
+                key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+                byte[] bytes = received;
+                received = null;
+                if (bytes != null && !process(bytes, bytes.length)) return;
+                enableWrite();
+            } catch (ClosedChannelException e) {
+                closeChannel();
+            }
+        }
+
+        private void enableWrite(){
+            writeRequested.set(false);
+            if (key != null && key.isValid()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Reads all available bytes and processes all completed frames.
+         * @param buffer the selector thread's read buffer
+         */
+        private void read(ByteBuffer buffer){
+            while (true) {
+                buffer.clear();
+                int read;
+                try {
+                    read = channel.read(buffer);
+                } catch (IOException e) {
+                    Log.log(Log.Level.DEBUG, "Error reading from channel. Closing connection.");
+                    closeChannel();
+                    return;
+                }
+                if (read == -1) { // stream ended
+                    closeChannel();
+                    return;
+                }
+                if (read == 0) return;
+                if (!process(buffer.array(), read)) return;
+            }
+        }
+
+        /**
+         * Splits received bytes into frames and processes all completed frames.
+         * @param bytes the received bytes
+         * @param read the number of received bytes
+         * @return false if the connection was closed due to invalid data
+         */
+        private boolean process(byte[] bytes, int read){
+            if (lengthPrefixed) return splitLengthPrefixed(bytes, read);
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == 0) {
+                    append(bytes, start, i - start);
+                    if (skipping) skipping = false; // new packet next up
+                    else handler.handleFrame(Arrays.copyOf(frame, frameLength));
+                    frameLength = 0;
+                    start = i + 1;
+                }
+            }
+            append(bytes, start, read - start);
+            return true;
+        }
+
+        /**
+         * Processes received bytes as length-prefixed frames.
+         * @return false if the connection was closed due to an invalid header
+         */
+        private boolean splitLengthPrefixed(byte[] bytes, int read){
+            int pos = 0;
+            while (pos < read) {
+                if (headerBytes < 4) {
+                    expectedLength = (expectedLength << 8) | (bytes[pos++] & 0xFF);
+                    if (++headerBytes < 4) continue;
+                    compressed = (expectedLength & Framing.COMPRESSED) != 0;
+                    if (compressed && compression == null) {
+                        Log.log(Log.Level.ERROR, "Invalid frame length received. Closing connection.");
+                        closeChannel();
+                        return false;
+                    }
+                    expectedLength &= ~Framing.COMPRESSED;
+                    skipping = expectedLength > maxPacketLength;
+                }
+                else {
+                    int n = Math.min(read - pos, expectedLength - frameLength);
+                    if (skipping) frameLength += n; // count skipped bytes only
+                    else append(bytes, pos, n);
+                    pos += n;
+                }
+                if (headerBytes == 4 && frameLength == expectedLength) {
+                    if (!skipping) {
+                        byte[] data = Arrays.copyOf(frame, frameLength);
+                        if (compressed) data = compression.decompress(data, maxPacketLength);
+                        if (data != null) handler.handleFrame(data);
+                        else Log.log(Log.Level.DEBUG, "Invalid compressed frame discarded.");
+                    }
+                    skipping = false;
+                    frameLength = 0;
+                    headerBytes = 0;
+                    expectedLength = 0;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Appends bytes to the current frame unless the frame is already too long.
+         */
+        private void append(byte[] bytes, int offset, int length){
+            if (skipping || length == 0) return;
+            if (frameLength + length > maxPacketLength){
+                skipping = true;
+                frameLength = 0;
+                return;
+            }
+            if (frameLength + length > frame.length)
+                frame = Arrays.copyOf(frame, Math.min(maxPacketLength, Math.max(frame.length * 2, frameLength + length)));
+            System.arraycopy(bytes, offset, frame, frameLength, length);
+            frameLength += length;
+        }
+
+        /**
+         * Writes as many queued frames as the socket accepts.
+         */
+        private void write(){
+            try {
+                while (true) {
+                    while (outgoing.size() < gather.length) {
+                        byte[] next = handler.nextFrame();
+                        if (next == null) break;
+                        long taken = System.nanoTime();
+                        if (lengthPrefixed) {
+                            byte[] packed = compression != null? compression.compress(next) : null;
+                            int header = packed != null? packed.length | Framing.COMPRESSED : next.length;
+                            outgoing.add((ByteBuffer) ByteBuffer.allocate(4).putInt(header).flip());
+                            outgoing.add(ByteBuffer.wrap(packed != null? packed : next));
+                        }
+                        else {
+                            outgoing.add(ByteBuffer.wrap(next));
+                            outgoing.add(ByteBuffer.wrap(TERMINATOR));
+                        }
+                        pending.add(new PendingFrame(next, outgoing.peekLast(), taken));
+                    }
+                    if (outgoing.isEmpty()) {
+                        if (closing) closeChannel();
+                        else key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    int count = 0;
+                    for (ByteBuffer buffer : outgoing) gather[count++] = buffer;
+                    channel.write(gather, 0, count);
+                    Arrays.fill(gather, 0, count, null);
+                    while (!outgoing.isEmpty() && !outgoing.peek().hasRemaining()) outgoing.poll();
+                    while (!pending.isEmpty() && !pending.peek().last.hasRemaining()) {
+                        PendingFrame written = pending.poll();
+                        handler.handleFrameWritten(written.frame, System.nanoTime() - written.taken);
+                    }
+                    if (!outgoing.isEmpty()) return; // socket buffer full, wait until writable again
+                }
+            } catch (IOException e) {
+                Log.log(Log.Level.DEBUG, "Error writing to channel. Closing connection.");
+                closeChannel();
+            }
+        }
+
+        private void closeChannel(){
+            if (closed.getCount() == 0) return;
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+            outgoing.clear();
+            pending.clear();
+            closed.countDown();
+            handler.handleClosed(this);
+        }
+    }
+
+    /**
+     * A frame that is being written.
+     */
+    private static class PendingFrame {
+
+        private byte[] frame;
+        private ByteBuffer last; // the frame is written completely once this buffer is
+        private long taken;
+
+        private PendingFrame(byte[] frame, ByteBuffer last, long taken){
+            this.frame = frame;
+            this.last = last;
+            this.taken = taken;
+        }
+    }
+
+    /**
+     * A selector thread serving a subset of all connections.
+     */
+    private class SelectorLoop implements Runnable {
+
+        private Selector selector;
+        private Thread thread;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+
+        private SelectorLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "agent-selector-" + index);
+        }
+
+        /**
+         * Schedules a task to be run by this selector thread.
+         * @param task the task to run
+         */
+        private void submit(Runnable task){
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        private void stop(){
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    Log.log(Log.Level.ERROR, "Selector failed. Stop serving connections.");
+                    break;
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isValid() && key.isReadable()) connection.read(readBuffer);
+                    if (key.isValid() && key.isWritable()) connection.write();
+                }
+                selector.selectedKeys().clear();
+            }
+            for (SelectionKey key : selector.keys()) ((Connection) key.attachment()).closeChannel();
+            try {
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
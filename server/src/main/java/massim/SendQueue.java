@@ -0,0 +1,97 @@
+package massim;
+
+import massim.util.Histogram;
+
+import java.util.ArrayDeque;
+
+/**
+ * Queue of encoded messages waiting to be sent to one agent.
+ * Lifecycle messages (e.g. sim-start, sim-end and bye) are never dropped. At most one request-action is queued at a
+ * time: it is superseded (and dropped) by any message added after it, since the agent could not answer it in time
+ * anyway. Thus, the queue cannot grow with the number of steps, no matter how slow the agent is reading.
+ */
+class SendQueue {
+
+    private ArrayDeque<byte[]> messages = new ArrayDeque<>();
+    private ArrayDeque<Long> queuedAt = new ArrayDeque<>(); // nano time each message was added at
+    private boolean actionRequestQueued = false; // whether the last element is a request-action
+    private long dropped = 0;
+    private Histogram queueWait;
+
+    /**
+     * @param queueWait records the time each message spends in the queue until it is taken
+     */
+    SendQueue(Histogram queueWait) {
+        this.queueWait = queueWait;
+    }
+
+    /**
+     * Removes a queued request-action, which is superseded by the next message.
+     * @return true if a request-action was removed (i.e. has been dropped)
+     */
+    synchronized boolean dropActionRequest() {
+        if (!actionRequestQueued) return false;
+        messages.pollLast();
+        queuedAt.pollLast();
+        actionRequestQueued = false;
+        dropped++;
+        return true;
+    }
+
+    /**
+     * Appends a message, superseding a queued request-action (see {@link #dropActionRequest()}).
+     * @param data the encoded message
+     * @param actionRequest whether the message is a request-action
+     */
+    synchronized void add(byte[] data, boolean actionRequest) {
+        dropActionRequest();
+        messages.addLast(data);
+        queuedAt.addLast(System.nanoTime());
+        actionRequestQueued = actionRequest;
+        notifyAll();
+    }
+
+    /**
+     * @return the next message or null if the queue is empty
+     */
+    synchronized byte[] poll() {
+        byte[] data = messages.pollFirst();
+        if (data == null) return null;
+        queueWait.record(System.nanoTime() - queuedAt.pollFirst());
+        if (messages.isEmpty()) actionRequestQueued = false;
+        return data;
+    }
+
+    /**
+     * Waits for the next message.
+     * @return the next message
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized byte[] take() throws InterruptedException {
+        while (messages.isEmpty()) wait();
+        return poll();
+    }
+
+    /**
+     * @return true if no messages are queued
+     */
+    synchronized boolean isEmpty() {
+        return messages.isEmpty();
+    }
+
+    /**
+     * Removes all messages without counting them as dropped (e.g. because the connection was replaced).
+     */
+    synchronized void clear() {
+        messages.clear();
+        queuedAt.clear();
+        actionRequestQueued = false;
+    }
+
+    /**
+     * @return the number of request-actions that have been dropped so far
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+}
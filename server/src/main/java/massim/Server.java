@@ -4,6 +4,7 @@ import massim.config.ServerConfig;
 import massim.config.TeamConfig;
 import massim.monitor.Monitor;
 import massim.protocol.WorldData;
+import massim.protocol.codec.Compression;
 import massim.protocol.messagecontent.Action;
 import massim.protocol.messagecontent.RequestAction;
 import massim.protocol.messagecontent.SimEnd;
@@ -166,9 +167,14 @@ public class Server {
         inputManager.start();
 
         // setup backend
-        agentManager = new AgentManager(config.teams, config.agentTimeout, config.maxPacketLength);
         try {
-            loginManager = new LoginManager(agentManager, config.port, config.backlog);
+            agentManager = new AgentManager(config);
+        } catch (IOException e) {
+            Log.log(Log.Level.CRITICAL, "Cannot start agent transport.");
+            return;
+        }
+        try {
+            loginManager = new LoginManager(agentManager, config);
             loginManager.start();
         } catch (IOException e) {
             Log.log(Log.Level.CRITICAL, "Cannot open server socket.");
@@ -305,6 +311,7 @@ public class Server {
                 // handle initial state
                 Map<String, SimStart> initialPercepts = sim.init(steps, simConfig, matchTeams);
                 handleSimState(sim.getName(), startTime, sim.getStaticData());
+                agentManager.resetTelemetry();
                 agentManager.handleInitialPercepts(initialPercepts);
 
                 // handle steps
@@ -312,7 +319,7 @@ public class Server {
                     Log.log(Log.Level.NORMAL, "Simulation at step " + i);
                     handleInputs(sim);
                     Map<String, RequestAction> percepts = sim.preStep(i);
-                    Map<String, Action> actions = agentManager.requestActions(percepts);
+                    Map<String, Action> actions = agentManager.requestActions(percepts, sim::handleAction);
                     sim.step(i, actions); // execute step with agent actions
                     handleSimState(sim.getName(), startTime, sim.getSnapshot());
                 }
@@ -320,7 +327,9 @@ public class Server {
                 // handle final state
                 Map<String, SimEnd> finalPercepts = sim.finish();
                 agentManager.handleFinalPercepts(finalPercepts);
-                result.put(sim.getName(), sim.getResult());
+                JSONObject simResult = sim.getResult();
+                simResult.put("telemetry", agentManager.getTelemetry());
+                result.put(sim.getName(), simResult);
             } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
                 Log.log(Log.Level.ERROR, "Could not load scenario class: " + className);
             }
@@ -365,8 +374,15 @@ public class Server {
      * @param command the already split command string
      */
     private void handleCommand(String[] command) {
-        // TODO handle something
         Log.log(Log.Level.NORMAL, "Command received: " + command[0]);
+        switch (command[0]) {
+            case "telemetry":
+                JSONObject telemetry = agentManager.getTelemetry();
+                if (command.length > 1) telemetry = telemetry.optJSONObject(command[1]);
+                if (telemetry == null) Log.log(Log.Level.ERROR, "Unknown agent: " + command[1]);
+                else Log.log(Log.Level.NORMAL, "Telemetry:\n" + telemetry.toString(2));
+                break;
+        }
     }
 
     /**
@@ -417,6 +433,22 @@ public class Server {
         Log.log(Log.Level.NORMAL, "Configuring max packet length: " + config.maxPacketLength);
         config.replayPath = serverJSON.optString("replayPath");
         Log.log(Log.Level.NORMAL, "Configuring replay path: " + config.replayPath);
+        config.transport = serverJSON.optString("transport", ServerConfig.TRANSPORT_BLOCKING);
+        Log.log(Log.Level.NORMAL, "Configuring transport: " + config.transport);
+        config.selectorThreads = serverJSON.optInt("selectorThreads", 2);
+        Log.log(Log.Level.NORMAL, "Configuring selector threads: " + config.selectorThreads);
+        config.keyframeInterval = serverJSON.optInt("keyframeInterval", 20);
+        Log.log(Log.Level.NORMAL, "Configuring keyframe interval: " + config.keyframeInterval);
+        config.compressionThreshold = serverJSON.optInt("compressionThreshold", Compression.DEFAULT_THRESHOLD);
+        Log.log(Log.Level.NORMAL, "Configuring compression threshold: " + config.compressionThreshold);
+        config.keepAlive = serverJSON.optBoolean("keepAlive", false);
+        Log.log(Log.Level.NORMAL, "Configuring keep-alive: " + config.keepAlive);
+        config.loginThreads = serverJSON.optInt("loginThreads", 4);
+        Log.log(Log.Level.NORMAL, "Configuring login threads: " + config.loginThreads);
+        config.maxPendingLogins = serverJSON.optInt("maxPendingLogins", 1000);
+        Log.log(Log.Level.NORMAL, "Configuring max pending logins: " + config.maxPendingLogins);
+        config.loginTimeout = serverJSON.optInt("loginTimeout", 5000);
+        Log.log(Log.Level.NORMAL, "Configuring login timeout: " + config.loginTimeout);
 
         // parse teams
         JSONObject teamJSON = conf.optJSONObject("teams");
@@ -15,6 +15,9 @@ public class ServerConfig {
     public final static String MODE_MANUAL = "manual";
     public final static String MODE_RANDOM = "random";
 
+    public final static String TRANSPORT_BLOCKING = "blocking";
+    public final static String TRANSPORT_NIO = "nio";
+
     public String tournamentMode;
     public String launch;
     public int teamSize;
@@ -52,4 +55,44 @@ public class ServerConfig {
      * The port for the webmonitor or 0.
      */
     public int monitorPort;
+
+    /**
+     * How agent connections are served: blocking (2 threads per agent) or nio (a fixed number of selector threads).
+     */
+    public String transport;
+
+    /**
+     * The number of selector threads to use with the nio transport.
+     */
+    public int selectorThreads;
+
+    /**
+     * The maximum number of delta-encoded step percepts between two full percepts (for agents requesting deltas).
+     */
+    public int keyframeInterval;
+
+    /**
+     * The minimum size of frames to compress (for agents requesting compression). Negative to disable compression.
+     */
+    public int compressionThreshold;
+
+    /**
+     * Whether to enable TCP keep-alive for agent connections (to detect agents that vanished without disconnecting).
+     */
+    public boolean keepAlive;
+
+    /**
+     * The number of threads performing the authentication of new connections.
+     */
+    public int loginThreads;
+
+    /**
+     * The maximum number of accepted connections waiting for a login thread. Further connections are closed.
+     */
+    public int maxPendingLogins;
+
+    /**
+     * The time (in ms) after which a new connection is closed if it has not completed the authentication.
+     */
+    public long loginTimeout;
 }
@@ -35,6 +35,15 @@ public abstract class AbstractSimulation {
      */
     public abstract Map<String, RequestAction> preStep(int stepNo);
 
+    /**
+     * Called as soon as an agent's action for the current step arrives, i.e. between {@link #preStep(int)} and
+     * {@link #step(int, Map)}. May be called concurrently for different agents and must not change the simulation's
+     * state. Can be used to prepare the action's execution while other agents are still thinking.
+     * @param agent the name of the agent
+     * @param action the agent's action
+     */
+    public void handleAction(String agent, Action action) {}
+
     /**
      * Execute one step in the scenario.
      * The agent's new actions have been set now.
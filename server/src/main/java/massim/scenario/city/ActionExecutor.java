@@ -8,39 +8,18 @@ import massim.scenario.city.data.*;
 import massim.scenario.city.data.facilities.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-import static massim.protocol.scenario.city.Actions.*;
+import static massim.scenario.city.data.ActionResult.*;
 
 /**
  * How else to execute agent actions.
  */
 public class ActionExecutor {
 
-    // scenario-specific failure-codes
-    public final static String SUCCESSFUL = "successful";
-    private final static String FAILED_COUNTERPART = "failed_counterpart";
-    private final static String FAILED_LOCATION = "failed_location";
-    public final static String FAILED_NO_ROUTE = "failed_no_route";
-    private final static String FAILED_UNKNOWN_ITEM = "failed_unknown_item";
-    private final static String FAILED_UNKNOWN_AGENT = "failed_unknown_agent";
-    private final static String FAILED_ITEM_AMOUNT = "failed_item_amount";
-    private final static String FAILED_CAPACITY = "failed_capacity";
-    private final static String FAILED_UNKNOWN_FACILITY = "failed_unknown_facility";
-    private final static String FAILED_WRONG_FACILITY = "failed_wrong_facility";
-    private final static String FAILED_TOOLS = "failed_tools";
-    private final static String FAILED_ITEM_TYPE = "failed_item_type";
-    private final static String FAILED_UNKNOWN_JOB = "failed_unknown_job";
-    private final static String FAILED_JOB_STATUS = "failed_job_status";
-    private final static String FAILED_JOB_TYPE = "failed_job_type";
-    private final static String PARTIAL_SUCCESS = "successful_partial";
-    private final static String FAILED_WRONG_PARAM = "failed_wrong_param";
-    private final static String FAILED_RESOURCES = "failed_resources";
-    private final static String FAILED = "failed";
-    private final static String USELESS = "useless";
-    private final static String FAILED_FACILITY_STATE = "failed_facility_state";
-
     private WorldState world;
+    private RoutePlanner routePlanner;
 
     /**
      * Contains all agents that actually received items this turn.
@@ -48,17 +27,28 @@ public class ActionExecutor {
     private Set<Entity> receivers;
 
     /**
-     * Contains all agents that want to assemble an item this turn.
+     * Contains all agents that want to receive items this turn.
+     */
+    private Set<Entity> receiving;
+
+    /**
+     * Keys: all agents that want to assemble an item this turn, Values: the items (null if unknown)
      */
-    private Set<Entity> assemblers;
+    private Map<Entity, Item> assemblers;
 
     /**
      * Keys: assemblers, Values: sets of assistants
      */
     private Map<Entity, Set<Entity>> assistants;
 
-    ActionExecutor(WorldState world) {
+    /**
+     * The actions of the current step (by agent) as decoded when they arrived.
+     */
+    private Map<String, CityAction> decodedActions = new ConcurrentHashMap<>();
+
+    ActionExecutor(WorldState world, RoutePlanner routePlanner) {
         this.world = world;
+        this.routePlanner = routePlanner;
     }
 
     /**
@@ -67,10 +57,48 @@ public class ActionExecutor {
      */
     void preProcess(){
         receivers = new HashSet<>();
-        assemblers = new HashSet<>();
+        receiving = new HashSet<>();
+        assemblers = new HashMap<>();
         assistants = new HashMap<>();
     }
 
+    /**
+     * Checks whether an action only reads and changes the acting entity (and otherwise only reads what does not
+     * change during a step). Such actions do not depend on the order of execution, so they can be executed
+     * concurrently. Actions using random numbers are not local, since the sequence of random numbers would change.
+     * @param action an action (null is treated as no action)
+     * @return true if the action is local
+     */
+    static boolean isLocal(Action action) {
+        return action == null || CityAction.Type.of(action.getActionType()).isLocal();
+    }
+
+    /**
+     * Decodes an action as soon as it arrives and starts computing the route of a goto action.
+     * Only reads the world state, so it can be done while waiting for the other agents' actions.
+     * @param agent the name of the agent
+     * @param action the agent's action for the current step
+     */
+    void prepare(String agent, Action action) {
+        Entity entity = world.getEntity(agent);
+        if (entity == null) return;
+        CityAction decoded = CityAction.decode(action, world);
+        decodedActions.put(agent, decoded);
+        if (decoded.type == CityAction.Type.GO_TO && decoded.destination != null)
+            routePlanner.plan(agent, entity.getLocation(), decoded.destination, entity.getRole().getPermissions());
+    }
+
+    /**
+     * @param agent the name of an agent
+     * @param action the agent's action
+     * @return the action as decoded by {@link #prepare(String, Action)} or decoded now if it has not been prepared
+     */
+    private CityAction decode(String agent, Action action) {
+        CityAction decoded = decodedActions.get(agent);
+        if (decoded != null && decoded.action == action) return decoded;
+        return CityAction.decode(action, world); // e.g. replaced by random fail
+    }
+
     /**
      * Execute an action for a given agent.
      * @param agent the name of the agent
@@ -87,43 +115,38 @@ public class ActionExecutor {
             action = Action.STD_NO_ACTION;
         }
         entity.setLastAction(action);
-        List<String> params = action.getParameters();
-        switch (action.getActionType()){
+        CityAction a = decode(agent, action);
+        switch (a.type){
 
-            case Action.RANDOM_FAIL:
+            case RANDOM_FAIL:
                 entity.setLastActionResult(FAILED);
                 break;
 
-            case Action.NO_ACTION:
+            case NO_ACTION:
                 entity.setLastActionResult(SUCCESSFUL);
                 break;
 
             case GO_TO:
-                if(params.size() == 0){ // no params => follow existing route
+                if(a.paramCount == 0){ // no params => follow existing route
                     if(entity.getRoute() == null){
                         entity.setLastActionResult(FAILED_WRONG_PARAM);
                         break;
                     }
                 }
-                Location destination;
-                if(params.size() == 1){ // param must be facility name
-                    Facility facility = world.getFacility(params.get(0));
+                if(a.paramCount == 1){ // param must be facility name
+                    Facility facility = a.facility;
                     if(facility == null || facility instanceof ResourceNode || facility instanceof Well){
                         entity.setLastActionResult(FAILED_UNKNOWN_FACILITY);
                         break;
                     }
-                    destination = facility.getLocation();
                 }
-                else if(params.size() == 2){ // params must be (lat,lon)
-                    destination = Location.parse(params.get(0), params.get(1));
-                }
-                else{ // too many parameters
+                else if(a.paramCount != 2){ // too many parameters
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
-                if (destination != null) entity.setRoute(
-                        world.getMap().findRoute(entity.getLocation(), destination, entity.getRole().getPermissions()));
-                else{
+                if (a.destination != null) entity.setRoute(routePlanner.findRoute(agent, entity.getLocation(),
+                        a.destination, entity.getRole().getPermissions()));
+                else{ // params must be (lat,lon)
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
@@ -131,22 +154,22 @@ public class ActionExecutor {
                 break;
 
             case BUILD:
-                if(params.size() > 1){
+                if(a.paramCount > 1){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     return;
                 }
-                if(params.size() == 1) { // param must be well type name
+                if(a.paramCount == 1) { // param must be well type name
                     Facility facility = world.getFacilityByLocation(entity.getLocation());
                     if(facility != null) { // current location is not free
                         entity.setLastActionResult(FAILED_LOCATION);
                         return;
                     }
-                    WellType wellType = world.getWellType(params.get(0));
+                    WellType wellType = a.wellType;
                     if(wellType == null) {
                         entity.setLastActionResult(FAILED_UNKNOWN_FACILITY);
                         return;
                     }
-                    TeamState team = world.getTeam(world.getTeamForAgent(agent));
+                    TeamState team = world.getTeam(entity);
                     if(team.getMassium() < wellType.getCost()){
                         entity.setLastActionResult(FAILED_RESOURCES);
                         return;
@@ -172,7 +195,7 @@ public class ActionExecutor {
                 break;
 
             case DISMANTLE:
-                if(params.size() > 0){
+                if(a.paramCount > 0){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     return;
                 }
@@ -186,21 +209,19 @@ public class ActionExecutor {
                 if(well.dismantle(entity.getSkill())){
                     world.removeWell(well);
                     int refund = (int) (RNG.nextDouble() * .5 * well.getCost()); // refund up to 50% of a well's cost
-                    TeamState team = world.getTeam(world.getTeamForAgent(agent));
+                    TeamState team = world.getTeam(entity);
                     team.addMassium(refund);
                 }
                 break;
 
             case GIVE: // 3 params (agent, item, amount)
-                if(params.size() != 3){
+                if(a.paramCount != 3){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                 }
                 else {
-                    String receiver = params.get(0);
-                    Item item = world.getItemByName(params.get(1));
-                    Entity receiverEntity = world.getEntity(receiver);
-                    int amount = -1;
-                    try { amount = Integer.parseInt(params.get(2)); } catch (NumberFormatException ignored) {}
+                    Item item = a.item;
+                    Entity receiverEntity = a.entity;
+                    int amount = a.amount;
 
                     if(receiverEntity == null || amount < 0){
                         entity.setLastActionResult(FAILED_WRONG_PARAM);
@@ -208,7 +229,7 @@ public class ActionExecutor {
                     else if (item == null) {
                         entity.setLastActionResult(FAILED_UNKNOWN_ITEM);
                     }
-                    else if (!actions.get(receiver).getActionType().equals(RECEIVE)) {
+                    else if (decode(a.agent, actions.get(a.agent)).type != CityAction.Type.RECEIVE) {
                         entity.setLastActionResult(FAILED_COUNTERPART);
                     }
                     else if (!receiverEntity.getLocation().inRange(entity.getLocation())) {
@@ -229,10 +250,11 @@ public class ActionExecutor {
                 break;
 
             case RECEIVE:
+                receiving.add(entity);
                 break; // action is processed in give-action, result in postProcess()
 
             case STORE: // 2 params (item, amount)
-                if(params.size() != 2){
+                if(a.paramCount != 2){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     return;
                 }
@@ -246,15 +268,12 @@ public class ActionExecutor {
                     return;
                 }
                 Storage storage = (Storage)facility;
-                Item item = world.getItemByName(params.get(0));
+                Item item = a.item;
                 if(item == null){
                     entity.setLastActionResult(FAILED_UNKNOWN_ITEM);
                     return;
                 }
-                int amount = -1;
-                try{
-                    amount = Integer.parseInt(params.get(1));
-                } catch(NumberFormatException ignored){}
+                int amount = a.amount;
                 if(amount < 1 || amount > entity.getItemCount(item)){
                     entity.setLastActionResult(FAILED_ITEM_AMOUNT);
                     return;
@@ -263,7 +282,7 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_CAPACITY);
                     return;
                 }
-                if(storage.store(item, amount, world.getTeamForAgent(agent))){
+                if(storage.store(item, amount, world.getTeam(entity).getName())){
                     entity.setLastActionResult(SUCCESSFUL);
                     entity.removeItem(item, amount);
                 }
@@ -274,7 +293,7 @@ public class ActionExecutor {
 
             case RETRIEVE:           // 2 params (item, amount)
             case RETRIEVE_DELIVERED: // 2 params (item, amount)
-                if(params.size() != 2){
+                if(a.paramCount != 2){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     return;
                 }
@@ -288,18 +307,15 @@ public class ActionExecutor {
                     return;
                 }
                 storage = (Storage)facility;
-                item = world.getItemByName(params.get(0));
+                item = a.item;
                 if(item == null){
                     entity.setLastActionResult(FAILED_UNKNOWN_ITEM);
                     return;
                 }
-                amount = -1;
-                try{
-                    amount = Integer.parseInt(params.get(1));
-                } catch(NumberFormatException ignored){}
-                int retrievable = action.getActionType().equals(RETRIEVE)?
-                                              storage.getStored(item, world.getTeamForAgent(agent))
-                                            : storage.getDelivered(item, world.getTeamForAgent(agent));
+                amount = a.amount;
+                int retrievable = a.type == CityAction.Type.RETRIEVE?
+                                              storage.getStored(item, world.getTeam(entity).getName())
+                                            : storage.getDelivered(item, world.getTeam(entity).getName());
                 if (amount < 1 || amount > retrievable){
                     entity.setLastActionResult(FAILED_ITEM_AMOUNT);
                     return;
@@ -308,16 +324,16 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_CAPACITY);
                     return;
                 }
-                if(action.getActionType().equals(RETRIEVE))
-                    storage.removeStored(item, amount, world.getTeamForAgent(agent));
+                if(a.type == CityAction.Type.RETRIEVE)
+                    storage.removeStored(item, amount, world.getTeam(entity).getName());
                 else
-                    storage.removeDelivered(item, amount, world.getTeamForAgent(agent));
+                    storage.removeDelivered(item, amount, world.getTeam(entity).getName());
                 entity.addItem(item, amount);
                 entity.setLastActionResult(SUCCESSFUL);
                 break;
 
             case ASSEMBLE: // 1 param (item)
-                if(params.size() != 1){
+                if(a.paramCount != 1){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
@@ -330,22 +346,22 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_WRONG_FACILITY);
                     break;
                 }
-                assemblers.add(entity);
+                assemblers.put(entity, a.item);
                 assistants.putIfAbsent(entity, new HashSet<>());
                 break;
 
             case ASSIST_ASSEMBLE: // 1 param (agent)
-                if(params.size() != 1){
+                if(a.paramCount != 1){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
-                Entity assembler = world.getEntity(params.get(0));
+                Entity assembler = a.entity;
                 if (assembler == null){
                     entity.setLastActionResult(FAILED_UNKNOWN_AGENT);
                     break;
                 }
-                Action counterPartAction = actions.get(params.get(0));
-                if(counterPartAction != null && !counterPartAction.getActionType().equals(ASSEMBLE)){
+                Action counterPartAction = actions.get(a.agent);
+                if(counterPartAction != null && decode(a.agent, counterPartAction).type != CityAction.Type.ASSEMBLE){
                     entity.setLastActionResult(FAILED_COUNTERPART);
                     break;
                 }
@@ -358,11 +374,11 @@ public class ActionExecutor {
                 break;
 
             case DELIVER_JOB: // 1 param (job)
-                if(params.size() != 1){
+                if(a.paramCount != 1){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
-                Job job = world.getJob(params.get(0));
+                Job job = a.job;
                 if(job == null){
                     entity.setLastActionResult(FAILED_UNKNOWN_JOB);
                     break;
@@ -378,7 +394,7 @@ public class ActionExecutor {
 
                 if (job instanceof AuctionJob) {
                     AuctionJob auctionJob = (AuctionJob) job;
-                    if (!auctionJob.isAssigned() || !auctionJob.getAuctionWinner().equals(world.getTeamForAgent(agent))){
+                    if (!auctionJob.isAssigned() || !auctionJob.getAuctionWinner().equals(world.getTeam(entity).getName())){
                         entity.setLastActionResult(FAILED_JOB_STATUS);
                         break;
                     }
@@ -386,13 +402,13 @@ public class ActionExecutor {
 
                 final int[] itemsUsed = {0};
                 job.getRequiredItems().forEach((it, qty) -> {
-                    int used = job.deliver(it, entity.getItemCount(it), world.getTeamForAgent(agent));
+                    int used = job.deliver(it, entity.getItemCount(it), world.getTeam(entity).getName());
                     entity.removeItem(it, used);
                     itemsUsed[0] += used;
                 });
 
                 if (itemsUsed[0] > 0){
-                    String teamName = world.getTeamForAgent(agent);
+                    String teamName = world.getTeam(entity).getName();
                     if (job.checkCompletion(teamName)) {
                         // add reward to completing team
                         int reward = job instanceof AuctionJob? ((AuctionJob)job).getLowestBid() : job.getReward();
@@ -412,19 +428,16 @@ public class ActionExecutor {
                 }
 
             case BID_FOR_JOB: // 2 params (job, price)
-                if(params.size() != 2){
+                if(a.paramCount != 2){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
-                job = world.getJob(params.get(0));
+                job = a.job;
                 if(job == null){
                     entity.setLastActionResult(FAILED_UNKNOWN_JOB);
                     break;
                 }
-                int price = -1;
-                try{
-                    price = Integer.parseInt(params.get(1));
-                } catch(NumberFormatException ignored){}
+                int price = a.amount;
                 if(price < 0){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
@@ -438,12 +451,12 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_JOB_STATUS);
                     break;
                 }
-                auction.bid(stepNo, world.getTeam(world.getTeamForAgent(agent)), price);
+                auction.bid(stepNo, world.getTeam(entity), price);
                 entity.setLastActionResult(SUCCESSFUL);
                 break;
 
             case DUMP: // 2 params (item, amount)
-                if(params.size() != 2){
+                if(a.paramCount != 2){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
@@ -456,15 +469,12 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_WRONG_FACILITY);
                     break;
                 }
-                item = world.getItemByName(params.get(0));
+                item = a.item;
                 if (item == null){
                     entity.setLastActionResult(FAILED_UNKNOWN_ITEM);
                     break;
                 }
-                amount = -1;
-                try{
-                    amount = Integer.parseInt(params.get(1));
-                } catch(NumberFormatException ignored){}
+                amount = a.amount;
                 if(amount < 1 || amount > entity.getItemCount(item)){
                     entity.setLastActionResult(FAILED_ITEM_AMOUNT);
                     break;
@@ -474,11 +484,11 @@ public class ActionExecutor {
                 break;
 
             case TRADE: // 2 params (item, amount)
-                if(params.size() != 2) {
+                if(a.paramCount != 2) {
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
-                item = world.getItemByName(params.get(0));
+                item = a.item;
                 if(item == null) {
                     entity.setLastActionResult(FAILED_UNKNOWN_ITEM);
                     return;
@@ -487,10 +497,7 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_ITEM_TYPE);
                     return;
                 }
-                amount = -1;
-                try{
-                    amount = Integer.parseInt(params.get(1));
-                } catch(NumberFormatException ignored){}
+                amount = a.amount;
                 if (amount < 1 || amount > entity.getItemCount(item)) {
                     entity.setLastActionResult(FAILED_ITEM_AMOUNT);
                     return;
@@ -502,12 +509,12 @@ public class ActionExecutor {
                 }
                 Shop shop = (Shop) fac;
                 entity.removeItem(item, amount);
-                world.getTeam(world.getTeamForAgent(agent)).addMassium(item.getValue() * shop.getTradeModifier());
+                world.getTeam(entity).addMassium(item.getValue() * shop.getTradeModifier());
                 entity.setLastActionResult(SUCCESSFUL);
                 return;
 
             case CHARGE: // no params
-                if(params.size() != 0){
+                if(a.paramCount != 0){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
@@ -525,7 +532,7 @@ public class ActionExecutor {
                 break;
 
             case RECHARGE: // no params
-                if(params.size() != 0){
+                if(a.paramCount != 0){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
@@ -550,7 +557,7 @@ public class ActionExecutor {
                 break;
 
             case GATHER: // no params
-                if(params.size() != 0){
+                if(a.paramCount != 0){
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     break;
                 }
@@ -580,7 +587,7 @@ public class ActionExecutor {
                 }
 
             case UPGRADE:
-                if(params.size() != 1) {
+                if(a.paramCount != 1) {
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     return;
                 }
@@ -593,13 +600,12 @@ public class ActionExecutor {
                     entity.setLastActionResult(FAILED_WRONG_FACILITY);
                     break;
                 }
-                String upgradeName = params.get(0);
-                Upgrade upgrade = world.getUpgrade(upgradeName);
+                Upgrade upgrade = a.upgrade;
                 if(upgrade == null) {
                     entity.setLastActionResult(FAILED_WRONG_PARAM);
                     return;
                 }
-                TeamState teamState = world.getTeam(world.getTeamForAgent(agent));
+                TeamState teamState = world.getTeam(entity);
                 if(teamState.getMassium() < upgrade.getCost()) {
                     entity.setLastActionResult(FAILED_RESOURCES);
                     return;
@@ -620,15 +626,12 @@ public class ActionExecutor {
      */
     void postProcess(){
         // set last action result for receiver agents
-        world.getEntities().stream()
-                .filter(r -> r.getLastAction().getActionType().equals(RECEIVE))
-                .forEach(r -> r.setLastActionResult(receivers.contains(r)? SUCCESSFUL : FAILED_COUNTERPART));
+        receiving.forEach(r -> r.setLastActionResult(receivers.contains(r)? SUCCESSFUL : FAILED_COUNTERPART));
 
         // handle assembly
         // assemblers and assistants are performing correct actions in the correct facility
         // agents are in the same workshop
-        assemblers.forEach(assembler -> {
-            Item item = world.getItemByName(assembler.getLastAction().getParameters().get(0));
+        assemblers.forEach((assembler, item) -> {
             if(item == null){
                 assembler.setLastActionResult(FAILED_UNKNOWN_ITEM);
                 assistants.get(assembler).forEach(a -> a.setLastActionResult(FAILED_COUNTERPART));
@@ -656,8 +659,8 @@ public class ActionExecutor {
                         String ag2 = world.getAgentForEntity(e2);
                         return ag1.length() == ag2.length()? ag1.compareTo(ag2) : ag1.length() - ag2.length();
                     });
-                    String assemblyResult = canBeAssembled(item, assembler, assemblyAssistants, true);
-                    if(assemblyResult.equals(SUCCESSFUL)){
+                    ActionResult assemblyResult = canBeAssembled(item, assembler, assemblyAssistants, true);
+                    if(assemblyResult == SUCCESSFUL){
                         assembler.setLastActionResult(SUCCESSFUL);
                         assistants.get(assembler).forEach(a -> a.setLastActionResult(SUCCESSFUL));
                     }
@@ -668,6 +671,7 @@ public class ActionExecutor {
                 }
             }
         });
+        decodedActions.clear();
     }
 
     /**
@@ -678,14 +682,14 @@ public class ActionExecutor {
      * @param assembler the head assembler
      * @param assistants the assistant assemblers (<b>sorted by connected agent's name</b>)
      * @param applyChanges whether to apply the changes (i.e. remove parts and add product to head assembler)
-     * @return the result of the assemble action, i.e. one of {@link #SUCCESSFUL}, {@link #FAILED_ITEM_TYPE},
-     * {@link #FAILED_ITEM_AMOUNT}, {@link #FAILED_CAPACITY}
+     * @return the result of the assemble action, i.e. one of {@link ActionResult#SUCCESSFUL},
+     * {@link ActionResult#FAILED_ITEM_TYPE}, {@link ActionResult#FAILED_ITEM_AMOUNT}, {@link ActionResult#FAILED_CAPACITY}
      */
-    private String canBeAssembled(Item item, Entity assembler, List<Entity> assistants, boolean applyChanges){
+    private ActionResult canBeAssembled(Item item, Entity assembler, List<Entity> assistants, boolean applyChanges){
         if(!item.needsAssembly()) return FAILED_ITEM_TYPE;
         if(applyChanges){
-            String dryRunResult = canBeAssembled(item, assembler, assistants, false);
-            if(!dryRunResult.equals(SUCCESSFUL)) return dryRunResult;
+            ActionResult dryRunResult = canBeAssembled(item, assembler, assistants, false);
+            if(dryRunResult != SUCCESSFUL) return dryRunResult;
         }
         int freedVolume = 0;
         for(Item part: item.getRequiredItems()){
@@ -0,0 +1,179 @@
+package massim.scenario.city;
+
+import massim.protocol.messagecontent.Action;
+import massim.protocol.scenario.city.Actions;
+import massim.scenario.city.data.*;
+import massim.scenario.city.data.facilities.Facility;
+import massim.scenario.city.data.facilities.ResourceNode;
+import massim.scenario.city.data.facilities.Well;
+import massim.scenario.city.data.facilities.WellType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An action decoded for execution, i.e. its type and its parameters resolved to what they refer to.
+ * Decoding only resolves names of things that cannot change while actions are executed (items, agents, jobs, ...),
+ * so actions can be decoded as soon as they arrive. Whether the parameters are valid is checked when the action is
+ * executed: references are null and amounts are -1 if the parameter is missing or invalid.
+ */
+class CityAction {
+
+    /**
+     * The action types of the scenario.
+     */
+    enum Type {
+        NO_ACTION(Action.NO_ACTION, true),
+        RANDOM_FAIL(Action.RANDOM_FAIL, true),
+        GO_TO(Actions.GO_TO, true),
+        CONTINUE(Actions.CONTINUE, true),
+        ABORT(Actions.ABORT, true),
+        CHARGE(Actions.CHARGE, false), // a well can be built or dismantled at the location
+        RECHARGE(Actions.RECHARGE, false), // random
+        GATHER(Actions.GATHER, false),
+        BUILD(Actions.BUILD, false),
+        DISMANTLE(Actions.DISMANTLE, false),
+        GIVE(Actions.GIVE, false),
+        RECEIVE(Actions.RECEIVE, false),
+        STORE(Actions.STORE, false),
+        RETRIEVE(Actions.RETRIEVE, false),
+        RETRIEVE_DELIVERED(Actions.RETRIEVE_DELIVERED, false),
+        ASSEMBLE(Actions.ASSEMBLE, false),
+        ASSIST_ASSEMBLE(Actions.ASSIST_ASSEMBLE, false),
+        DELIVER_JOB(Actions.DELIVER_JOB, false),
+        BID_FOR_JOB(Actions.BID_FOR_JOB, false),
+        DUMP(Actions.DUMP, false),
+        TRADE(Actions.TRADE, false),
+        UPGRADE(Actions.UPGRADE, false),
+        UNKNOWN(null, false);
+
+        private final static Map<String, Type> BY_NAME = new HashMap<>();
+        static {
+            for (Type type : values()) {
+                if (type.name != null) BY_NAME.put(type.name, type);
+            }
+        }
+
+        private final String name;
+        private final boolean local;
+
+        Type(String name, boolean local) {
+            this.name = name;
+            this.local = local;
+        }
+
+        /**
+         * @param name the name of an action type
+         * @return the type with that name or {@link #UNKNOWN}
+         */
+        static Type of(String name) {
+            Type type = BY_NAME.get(name);
+            return type != null? type : UNKNOWN;
+        }
+
+        /**
+         * @return whether actions of this type are local (see {@link ActionExecutor#isLocal(Action)})
+         */
+        boolean isLocal() {
+            return local;
+        }
+    }
+
+    final Action action;
+    final Type type;
+    final int paramCount;
+
+    String agent;               // give (receiver), assist_assemble (assembler)
+    Entity entity;              // the entity of agent
+    Item item;                  // give, store, retrieve(_delivered), assemble, dump, trade
+    int amount = -1;            // give, store, retrieve(_delivered), dump, trade, bid_for_job (price)
+    Facility facility;          // goto (to a facility)
+    Location destination;       // goto (to a facility that can be a destination, or to coordinates)
+    Job job;                    // deliver_job, bid_for_job
+    WellType wellType;          // build (a new well)
+    Upgrade upgrade;            // upgrade
+
+    private CityAction(Action action, Type type) {
+        this.action = action;
+        this.type = type;
+        paramCount = action.getParameters().size();
+    }
+
+    /**
+     * Decodes an action.
+     * @param action the action as sent by the agent
+     * @param world the world to resolve the parameters in
+     * @return the decoded action
+     */
+    static CityAction decode(Action action, WorldState world) {
+        CityAction decoded = new CityAction(action, Type.of(action.getActionType()));
+        List<String> params = action.getParameters();
+        switch (decoded.type) {
+            case GO_TO:
+                if (params.size() == 1) {
+                    decoded.facility = world.getFacility(params.get(0));
+                    Facility facility = decoded.facility;
+                    if (facility != null && !(facility instanceof ResourceNode) && !(facility instanceof Well))
+                        decoded.destination = facility.getLocation();
+                }
+                else if (params.size() == 2) decoded.destination = Location.parse(params.get(0), params.get(1));
+                break;
+            case BUILD:
+                if (params.size() == 1) decoded.wellType = world.getWellType(params.get(0));
+                break;
+            case GIVE:
+                if (params.size() == 3) {
+                    decoded.setAgent(params.get(0), world);
+                    decoded.item = world.getItemByName(params.get(1));
+                    decoded.amount = parseAmount(params.get(2));
+                }
+                break;
+            case STORE:
+            case RETRIEVE:
+            case RETRIEVE_DELIVERED:
+            case DUMP:
+            case TRADE:
+                if (params.size() == 2) {
+                    decoded.item = world.getItemByName(params.get(0));
+                    decoded.amount = parseAmount(params.get(1));
+                }
+                break;
+            case ASSEMBLE:
+                if (params.size() == 1) decoded.item = world.getItemByName(params.get(0));
+                break;
+            case ASSIST_ASSEMBLE:
+                if (params.size() == 1) decoded.setAgent(params.get(0), world);
+                break;
+            case DELIVER_JOB:
+                if (params.size() == 1) decoded.job = world.getJob(params.get(0));
+                break;
+            case BID_FOR_JOB:
+                if (params.size() == 2) {
+                    decoded.job = world.getJob(params.get(0));
+                    decoded.amount = parseAmount(params.get(1));
+                }
+                break;
+            case UPGRADE:
+                if (params.size() == 1) decoded.upgrade = world.getUpgrade(params.get(0));
+                break;
+        }
+        return decoded;
+    }
+
+    private void setAgent(String agent, WorldState world) {
+        this.agent = agent;
+        entity = world.getEntity(agent);
+    }
+
+    /**
+     * @return the amount or -1 if the string is no integer
+     */
+    private static int parseAmount(String amount) {
+        try {
+            return Integer.parseInt(amount);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -10,15 +10,16 @@ import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
-import massim.protocol.scenario.city.util.LocationUtil;
 import massim.util.Log;
 import massim.util.RNG;
 import massim.scenario.city.data.Location;
 import massim.scenario.city.data.Route;
 import massim.scenario.city.util.GraphHopperManager;
+import massim.scenario.city.util.RoadComponents;
+import massim.scenario.city.util.RouteCache;
+import massim.scenario.city.util.RouteCache.Polyline;
 
 import java.io.Serializable;
-import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -33,15 +34,22 @@ public class CityMap implements Serializable {
 	private double minLon;
 	private double maxLon;
 	private Location center;
+	private RouteCache routeCache;
+	private int centerComponent;
+	private String routingAlgorithm;
 
-	public CityMap(String mapName, int cellSize, double minLat, double maxLat, double minLon, double maxLon, Location center) {
+	public CityMap(String mapName, int cellSize, double minLat, double maxLat, double minLon, double maxLon,
+				   Location center, int routeCacheSize, String routingAlgorithm) {
 		this.cellSize = cellSize;
 		this.minLon = minLon;
 		this.maxLon = maxLon;
 		this.minLat = minLat;
 		this.maxLat = maxLat;
 		this.center = center;
+		this.routeCache = new RouteCache(routeCacheSize);
+		this.routingAlgorithm = routingAlgorithm;
 		GraphHopperManager.init(mapName);
+		centerComponent = getRoadComponent(center);
 	}
 
 	/**
@@ -56,7 +64,7 @@ public class CityMap implements Serializable {
 		if(!isReachable(to, permissions)) return null; // target must be reachable
 		if (permissions.contains(GraphHopperManager.PERMISSION_AIR))
 			return getNewAirRoute(from, to);
-		if (permissions.contains(GraphHopperManager.PERMISSION_ROAD) && existsRoute(to, from))
+		if (permissions.contains(GraphHopperManager.PERMISSION_ROAD) && existsRouteBack(from, to))
 			return getNewCarRoute(from, to);
 		Log.log(Log.Level.ERROR, "Cannot find a route with those permissions");
 		return null;
@@ -69,28 +77,49 @@ public class CityMap implements Serializable {
      * @return a new route or null if no such route exists
      */
 	private Route getNewAirRoute(Location from, Location to){
-		Route route = new Route();
-		double fractions = getLength(from, to) / (double)cellSize;
-		Location loc = null;
-		for (long i = 1; i <= fractions; i++) {
-			loc = getIntermediateLoc(from, to, fractions, i);
-			route.addPoint(loc);
-		}
-		if (!to.equals(loc)) { route.addPoint(to); }
-		return route;
+		return Route.air(from, to, cellSize);
 	}
 
     /**
-     * Requests a (car) route from GH.
+     * Requests a (car) route from GH or takes it from the cache.
      * @param from starting location
      * @param to destination
-     * @return the answer from GH
+     * @return the points of the route or null if no route exists
      */
-	private GHResponse queryGH(Location from, Location to){
-        GHRequest req = new GHRequest(from.getLat(), from.getLon(), to.getLat(), to.getLon())
-                .setWeighting("shortest")
-                .setVehicle("car");
-        return GraphHopperManager.getHopper().route(req);
+	private Polyline queryGH(Location from, Location to){
+		RouteCache.Key key = new RouteCache.Key("car", from.getFixedLat(), from.getFixedLon(),
+				to.getFixedLat(), to.getFixedLon());
+		return routeCache.get(key, () -> queryGH(from, to, routingAlgorithm));
+    }
+
+    /**
+     * Requests a (car) route from GH (without using the cache).
+     * @param from starting location
+     * @param to destination
+     * @param algorithm the GH routing algorithm to use (e.g. dijkstrabi or astarbi)
+     * @return the points of the route or null if no route exists
+     */
+	Polyline queryGH(Location from, Location to, String algorithm){
+		GHRequest req = new GHRequest(from.getLat(), from.getLon(), to.getLat(), to.getLon())
+				.setWeighting("shortest")
+				.setVehicle("car")
+				.setAlgorithm(algorithm);
+		// the default (plane projection) can overestimate the remaining distance, so A* might miss the shortest route
+		req.getHints().put("astarbi.approximation", "BeelineAccurate");
+		GHResponse rsp = GraphHopperManager.getHopper().route(req);
+		rsp.getErrors().forEach(error -> Log.log(Log.Level.ERROR, "GH: " + error.getMessage()));
+		if (rsp.hasErrors()) return null;
+		PointList pointList = rsp.getBest().getPoints();
+		if (pointList.size() == 0) return null;
+		double[] lats = new double[pointList.size()];
+		double[] lons = new double[pointList.size()];
+		int i = 0;
+		for (GHPoint point : pointList) {
+			lats[i] = point.getLat();
+			lons[i] = point.getLon();
+			i++;
+		}
+		return new Polyline(lats, lons);
     }
 
     /**
@@ -100,71 +129,27 @@ public class CityMap implements Serializable {
      * @return true if such a route exists
      */
     private boolean existsRoute(Location from, Location to) {
-        GHResponse rsp = queryGH(from, to);
-        rsp.getErrors().forEach(error -> Log.log(Log.Level.ERROR, "GH: " + error.getMessage()));
-        return !rsp.hasErrors() && rsp.getBest().getPoints().size() > 0;
+        return queryGH(from, to) != null;
     }
-	
-	private Route getNewCarRoute(Location from, Location to){
-
-        GHResponse rsp = queryGH(from, to);
-		if(rsp.hasErrors()) return null;
 
-		Route route = new Route();
-
-		// points, distance in meters and time in millis of the full path
-		PointList pointList = rsp.getBest().getPoints();
-		Iterator<GHPoint3D> pIterator = pointList.iterator();
-		if (!pIterator.hasNext()) return null;
-		GHPoint prevPoint = pIterator.next();
-		
-		double remainder = 0;
-		Location loc = null;
-		while (pIterator.hasNext()){
-			GHPoint nextPoint = pIterator.next();
-			double length = getLength(prevPoint, nextPoint);
-			if (length == 0){
-				prevPoint = nextPoint;
-				continue;
-			}
-			
-			long i = 0;
-			for (; i * cellSize + remainder < length ; i++) {
-				loc = getIntermediateLoc(prevPoint, nextPoint, length, i * cellSize + remainder);
-				if (!from.equals(loc)) {
-					route.addPoint(loc);
-				}
-			}
-			remainder = i * cellSize + remainder - length;
-			prevPoint = nextPoint;
-		}
-		
-		if (!to.equals(loc)) { route.addPoint(to); }
+    /**
+     * Checks if a road route from the destination back to the start exists. If both locations are in the same
+     * strongly connected component of the roads, only their components are compared. Otherwise GH is asked.
+     * @param from starting location
+     * @param to destination
+     * @return true if a route from the destination to the start exists
+     */
+    private boolean existsRouteBack(Location from, Location to) {
+		int component = getRoadComponent(from);
+		if (component != RoadComponents.NONE && component == getRoadComponent(to)) return true;
+		return existsRoute(to, from);
+    }
 
-		return route;
-	}
-	
-	
-	private double getLength(Location loc1, Location loc2) {
-        return LocationUtil.calculateRange(loc1.getLat(), loc1.getLon(), loc2.getLat(), loc2.getLon());
-	}
-	
-	
-	private Location getIntermediateLoc(Location loc1, Location loc2, double fractions, long i) {
-		double lon = (loc2.getLon() - loc1.getLon())*i/fractions + loc1.getLon();
-		double lat = (loc2.getLat() - loc1.getLat())*i/fractions + loc1.getLat();
-		return new Location(lon,lat);
-	}
-	
-	
-	private double getLength(GHPoint loc1, GHPoint loc2) {
-        return LocationUtil.calculateRange(loc1.getLat(), loc1.getLon(), loc2.getLat(), loc2.getLon());
-	}
-	
-	private Location getIntermediateLoc(GHPoint loc1, GHPoint loc2, double length, double i) {
-		double lon = (loc2.getLon() - loc1.getLon())*i/length + loc1.getLon();
-		double lat = (loc2.getLat() - loc1.getLat())*i/length + loc1.getLat();
-		return new Location(lon,lat);
+	private Route getNewCarRoute(Location from, Location to){
+		// points of the full path (waypoints are interpolated by the route)
+		Polyline polyline = queryGH(from, to);
+		if (polyline == null) return null;
+		return Route.along(from, to, polyline.getLats(), polyline.getLons(), cellSize);
 	}
 
     /**
@@ -221,7 +206,7 @@ public class CityMap implements Serializable {
 	}
 
     /**
-     * Checks if a location is reachable in this map. Needs to compute two routes for this.
+     * Checks if a location is reachable in this map.
      * @param loc the location to check
      * @param roads the roads that may be used
      * @return true if the location is reachable (i.e. it's not null, it's within map bounds,
@@ -229,9 +214,24 @@ public class CityMap implements Serializable {
      */
 	private boolean isReachable(Location loc, Set<String> roads) {
         if (loc == null || !isInBounds(loc)) return false;
-        return roads.contains("air") || (existsRoute(loc, center) && existsRoute(center, loc));
+        return roads.contains("air") || isConnectedToCenter(loc);
     }
 
+	/**
+	 * Checks if there are road routes from a location to the center and back. Only compares the road components
+	 * of both locations, no routes are computed.
+	 * @param loc the location to check
+	 * @return true if the location and the center are in the same strongly connected component of the roads
+	 */
+	public boolean isConnectedToCenter(Location loc) {
+		int component = getRoadComponent(loc);
+		return component != RoadComponents.NONE && component == centerComponent;
+	}
+
+	private int getRoadComponent(Location loc) {
+		return GraphHopperManager.getRoadComponents().getComponent(loc.getLat(), loc.getLon());
+	}
+
     /**
      * @param loc the location to check
      * @return true if the location is within map bounds
@@ -247,6 +247,13 @@ public class CityMap implements Serializable {
     	return center;
 	}
 
+	/**
+	 * @return the cache of car routes (e.g. for its hit/miss counts)
+	 */
+	public RouteCache getRouteCache(){
+		return routeCache;
+	}
+
 	/**
 	 * @return the cell size of the map
 	 */
@@ -11,6 +11,7 @@ import massim.protocol.scenario.city.data.*;
 import massim.protocol.scenario.city.percept.CityInitialPercept;
 import massim.protocol.scenario.city.percept.CityStepPercept;
 import massim.protocol.scenario.city.util.LocationUtil;
+import massim.protocol.scenario.city.util.SpatialIndex;
 import massim.scenario.AbstractSimulation;
 import massim.scenario.city.data.*;
 import massim.scenario.city.data.facilities.Facility;
@@ -18,6 +19,7 @@ import massim.scenario.city.data.facilities.Storage;
 import massim.scenario.city.data.facilities.Well;
 import massim.scenario.city.data.facilities.WellType;
 import massim.scenario.city.util.Generator;
+import massim.scenario.city.util.RouteCache;
 import massim.util.Log;
 import massim.util.RNG;
 import org.json.JSONObject;
@@ -34,6 +36,9 @@ public class CitySimulation extends AbstractSimulation {
     private int currentStep = -1;
     private WorldState world;
     private ActionExecutor actionExecutor;
+    private RoutePlanner routePlanner;
+    private String actionExecution;
+    private long actionMismatches = 0; // only counted if execution is verified
     private Generator generator;
     private StaticCityData staticData;
 
@@ -50,7 +55,12 @@ public class CitySimulation extends AbstractSimulation {
 
         // create the most important things
         world = new WorldState(steps, config, matchTeams, generator);
-        actionExecutor = new ActionExecutor(world);
+        int routeThreads = config.optInt("routeThreads", Runtime.getRuntime().availableProcessors());
+        Log.log(Log.Level.NORMAL, "Configuring route threads: " + routeThreads);
+        routePlanner = new RoutePlanner(world.getMap(), routeThreads);
+        actionExecutor = new ActionExecutor(world, routePlanner);
+        actionExecution = config.optString("actionExecution", "parallel");
+        Log.log(Log.Level.NORMAL, "Configuring action execution: " + actionExecution);
 
         // create data objects for all items
         List<Item> allItems = world.getItems();
@@ -118,9 +128,7 @@ public class CitySimulation extends AbstractSimulation {
         generator.generateJobs(stepNo, world).forEach(job -> world.addJob(job));
 
         // activate jobs for this step
-        world.getJobs().stream()
-                .filter(job -> job.getBeginStep() == stepNo)
-                .forEach(Job::activate);
+        world.activateJobs(stepNo);
 
         /* create percept data */
         // create team data
@@ -177,40 +185,23 @@ public class CitySimulation extends AbstractSimulation {
             storageMap.put(team.getName(), storageData);
         }
 
-        /* create job data */
+        /* create job data (only rebuilt if any job has changed) */
         Map<String, List<AuctionJobData>> auctionsPerTeam = new HashMap<>();
         Map<String, List<MissionData>> missionsPerTeam = new HashMap<>();
-        List<JobData> regularJobs = world.getJobs().stream()
-                .filter(job -> !(job instanceof AuctionJob) && job.isActive())
-                .map(job -> job.toJobData(false, false))
-                .sorted()
-                .collect(Collectors.toList());
-
-        // list of auction jobs in auctioning state (visible to all)
-        List<AuctionJobData> auctioningJobs = world.getJobs().stream()
-                .filter(job -> (job instanceof AuctionJob && job.getStatus() == Job.JobStatus.AUCTION ))
-                .map(job -> job.toJobData(false, false))
-                .map(jobData -> (AuctionJobData)jobData)
-                .collect(Collectors.toList());
-
-        // add per team: auctions assigned to that team + missions
+        List<JobData> regularJobs = world.getRegularJobData();
         world.getTeams().forEach(team -> {
-            List<AuctionJobData> teamAuctions = new Vector<>(auctioningJobs);
-            List<MissionData> teamMissions = new Vector<>();
-            for (Job job : world.getJobs()) {
-                if(job instanceof AuctionJob
-                        && ((AuctionJob)job).getAuctionWinner().equals(team.getName())
-                        && job.isActive()){
-                    if(job instanceof Mission) teamMissions.add((MissionData) job.toJobData(false, false));
-                    else teamAuctions.add((AuctionJobData) job.toJobData(false, false));
-                }
-            }
-            Collections.sort(teamAuctions);
-            Collections.sort(teamMissions);
-            auctionsPerTeam.put(team.getName(), teamAuctions);
-            missionsPerTeam.put(team.getName(), teamMissions);
+            auctionsPerTeam.put(team.getName(), world.getAuctionJobData(team.getName()));
+            missionsPerTeam.put(team.getName(), world.getMissionData(team.getName()));
         });
 
+        // index located records once, so that each percept only has to look at records near its entity
+        int maxVision = world.getAgents().stream().mapToInt(agent -> world.getEntity(agent).getVision()).max().orElse(0);
+        SpatialIndex<EntityData> entityIndex =
+                new SpatialIndex<>(entities, EntityData::getLat, EntityData::getLon, maxVision);
+        SpatialIndex<ResourceNodeData> resourceNodeIndex =
+                new SpatialIndex<>(resourceNodes, FacilityData::getLat, FacilityData::getLon, maxVision);
+        SpatialIndex<WellData> wellIndex = new SpatialIndex<>(wells, FacilityData::getLat, FacilityData::getLon, maxVision);
+
         // create and deliver percepts
         Map<String, RequestAction> percepts = new HashMap<>();
         world.getAgents().forEach(agent -> {
@@ -218,10 +209,10 @@ public class CitySimulation extends AbstractSimulation {
             percepts.put(agent,
                     new CityStepPercept(
                             completeEntities.get(agent),
-                            team, stepNo, teamData.get(team), entities, shops, workshops, stations, dumps,
+                            team, stepNo, teamData.get(team), entityIndex, shops, workshops, stations, dumps,
                             storageMap.get(team),
-                            resourceNodes,
-                            wells,
+                            resourceNodeIndex,
+                            wellIndex,
                             regularJobs,
                             auctionsPerTeam,
                             missionsPerTeam,
@@ -312,10 +303,8 @@ public class CitySimulation extends AbstractSimulation {
             // check if entity has a route
             List<WayPointData> waypoints = new Vector<>();
             if(entity.getRoute() != null){
-                int i = 0;
-                for (Location loc: entity.getRoute().getWaypoints()) {
-                    waypoints.add(new WayPointData(i++, loc.getLat(), loc.getLon()));
-                }
+                entity.getRoute().forEachWaypoint((i, lat, lon) ->
+                        waypoints.add(new WayPointData(i, Location.round(lat), Location.round(lon))));
             }
             // create entity snapshot
             result.put(agent,
@@ -334,7 +323,7 @@ public class CitySimulation extends AbstractSimulation {
                             waypoints,
                             entity.getInventory().toItemAmountData(),
                             agent,
-                            world.getTeamForAgent(agent),
+                            world.getTeam(entity).getName(),
                             entity.getRole().getName(),
                             entity.getLocation().getLat(),
                             entity.getLocation().getLon()
@@ -343,10 +332,15 @@ public class CitySimulation extends AbstractSimulation {
         return result;
     }
 
+    @Override
+    public void handleAction(String agent, Action action) {
+        actionExecutor.prepare(agent, action);
+    }
+
     @Override
     public void step(int stepNo, Map<String, Action> actions) {
         // execute all actions in random order
-        List<String> agents = world.getAgents();
+        List<String> agents = new ArrayList<>(world.getAgents());
         RNG.shuffle(agents);
         actionExecutor.preProcess();
 
@@ -358,18 +352,25 @@ public class CitySimulation extends AbstractSimulation {
         });
 
         // execute all actions
-        for(String agent: agents)
-            actionExecutor.execute(agent, actions, stepNo);
+        switch (actionExecution) {
+            case "serial":
+                agents.forEach(agent -> actionExecutor.execute(agent, actions, stepNo));
+                break;
+            case "verify":
+                executeVerified(agents, actions, stepNo);
+                break;
+            default:
+                executeInParallel(agents, actions, stepNo);
+        }
         actionExecutor.postProcess();
+        routePlanner.clear();
 
         // check if agents may be stuck @IMPROVE can this be prevented with GH?
-        Set<String> roads = new HashSet<>(Collections.singletonList("road"));
         world.getEntities().stream()
                 .filter(e -> !e.getRole().getName().equals("drone"))
-                .filter(e -> e.getLastActionResult().equals(ActionExecutor.FAILED_NO_ROUTE))
+                .filter(e -> e.getLastResult() == ActionResult.FAILED_NO_ROUTE)
                 .forEach(entity -> {
-            Route route = world.getMap().findRoute(entity.getLocation(), world.getMap().getCenter(), roads);
-            if(route == null){ // no route, agent must be stuck
+            if(!world.getMap().isConnectedToCenter(entity.getLocation())){ // no route, agent must be stuck
                 // find nearest facility
                 Facility nextFac = null;
                 double min = Double.MAX_VALUE;
@@ -395,14 +396,10 @@ public class CitySimulation extends AbstractSimulation {
         world.processNewJobs();
 
         // tell all jobs which have to end that they have to end
-        world.getJobs().stream().filter(job -> job.getEndStep() == stepNo).forEach(Job::terminate);
+        world.terminateJobs(stepNo);
 
         // assign auction jobs which have finished auctioning
-        world.getJobs().stream()
-                .filter(job -> job instanceof AuctionJob
-                               && job.getBeginStep() + ((AuctionJob)job).getAuctionTime() - 1 == stepNo
-                               && !((AuctionJob)job).isAssigned())
-                .forEach(job -> ((AuctionJob)job).assign());
+        world.assignAuctions(stepNo);
 
         // retrieve points from all wells
         world.getWells().stream()
@@ -413,6 +410,49 @@ public class CitySimulation extends AbstractSimulation {
         });
     }
 
+    /**
+     * Executes all local actions (see {@link ActionExecutor#isLocal(Action)}) in parallel, then all other actions
+     * in the given order. The result is the same as executing all actions in the given order.
+     * @param agents all agents in the order of execution
+     * @param actions the actions of all agents
+     * @param stepNo the current step
+     */
+    private void executeInParallel(List<String> agents, Map<String, Action> actions, int stepNo) {
+        Map<Boolean, List<String>> byLocality = agents.stream()
+                .collect(Collectors.partitioningBy(agent -> ActionExecutor.isLocal(actions.get(agent))));
+        byLocality.get(true).parallelStream().forEach(agent -> actionExecutor.execute(agent, actions, stepNo));
+        byLocality.get(false).forEach(agent -> actionExecutor.execute(agent, actions, stepNo));
+    }
+
+    /**
+     * Executes the local actions in parallel and records their results. Then resets the affected entities and
+     * executes all actions serially (which determines the actual result) to check if the results are the same.
+     * @param agents all agents in the order of execution
+     * @param actions the actions of all agents
+     * @param stepNo the current step
+     */
+    private void executeVerified(List<String> agents, Map<String, Action> actions, int stepNo) {
+        List<String> localAgents = agents.stream()
+                .filter(agent -> ActionExecutor.isLocal(actions.get(agent)))
+                .collect(Collectors.toList());
+        Map<String, Entity.LocalState> initialStates = new HashMap<>();
+        localAgents.forEach(agent -> initialStates.put(agent, world.getEntity(agent).getLocalState()));
+
+        localAgents.parallelStream().forEach(agent -> actionExecutor.execute(agent, actions, stepNo));
+        Map<String, Entity.LocalState> parallelStates = new HashMap<>();
+        localAgents.forEach(agent -> parallelStates.put(agent, world.getEntity(agent).getLocalState()));
+
+        initialStates.forEach((agent, state) -> world.getEntity(agent).setLocalState(state));
+        agents.forEach(agent -> actionExecutor.execute(agent, actions, stepNo));
+        localAgents.forEach(agent -> {
+            if (!parallelStates.get(agent).equals(world.getEntity(agent).getLocalState())) {
+                actionMismatches++;
+                Log.log(Log.Level.CRITICAL, "Step " + stepNo + ": Parallel execution of "
+                        + world.getEntity(agent).getLastAction().getActionType() + " differs for agent " + agent);
+            }
+        });
+    }
+
     @Override
     public Map<String, SimEnd> finish() {
         Map<TeamState, Integer> rankings = getRankings();
@@ -421,6 +461,12 @@ public class CitySimulation extends AbstractSimulation {
             TeamState team = world.getTeam(world.getTeamForAgent(agent));
             results.put(agent, new SimEnd(rankings.get(team), team.getScore()));
         });
+        routePlanner.shutdown();
+        if (actionExecution.equals("verify"))
+            Log.log(Log.Level.NORMAL, "Action execution verified: " + actionMismatches + " mismatches");
+        RouteCache routeCache = world.getMap().getRouteCache();
+        Log.log(Log.Level.NORMAL, "Route cache: " + routeCache.getHits() + " hits, "
+                + routeCache.getMisses() + " misses");
         return results;
     }
 
@@ -434,6 +480,7 @@ public class CitySimulation extends AbstractSimulation {
             teamResult.put("ranking", rankings.get(team));
             result.put(team.getName(), teamResult);
         });
+        result.put("routeCache", world.getMap().getRouteCache().toJSON());
         return result;
     }
 
@@ -476,7 +523,7 @@ public class CitySimulation extends AbstractSimulation {
                 buildDumpData(),
                 buildResourceNodeData(),
                 world.getJobs().stream()
-                        .map(job -> job.toJobData(true, true))
+                        .map(Job::getSnapshotData)
                         .collect(Collectors.toList()),
                 world.getStorages().stream()
                         .map(s -> s.toStorageData(world.getTeams().stream()
@@ -504,6 +551,13 @@ public class CitySimulation extends AbstractSimulation {
         return world;
     }
 
+    /**
+     * @param actionExecution how to execute actions from now on (parallel, serial or verify)
+     */
+    void setActionExecution(String actionExecution) {
+        this.actionExecution = actionExecution;
+    }
+
     @Override
     public void handleCommand(String[] command) {
         switch (command[0]){
@@ -0,0 +1,112 @@
+package massim.scenario.city;
+
+import massim.scenario.city.data.Location;
+import massim.scenario.city.data.Route;
+import massim.util.Log;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Computes the routes of goto actions in the background, as soon as the actions arrive, so that routing overlaps
+ * with waiting for the remaining agents.
+ * A planned route is only used if the goto is executed with exactly the same start, destination and permissions,
+ * otherwise the route is computed when the action is executed. Since routing does not depend on anything else, the
+ * result is the same either way.
+ */
+class RoutePlanner {
+
+    private CityMap map;
+    private ExecutorService executor;
+    private Map<String, PlannedRoute> plannedRoutes = new ConcurrentHashMap<>();
+
+    /**
+     * @param map the map to find routes in
+     * @param threads the number of routes to compute concurrently
+     */
+    RoutePlanner(CityMap map, int threads) {
+        this.map = map;
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "route-planner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts computing a route in the background (replacing any route previously planned for the agent).
+     * @param agent the agent that is going to use the route
+     * @param from the start of the route
+     * @param to the destination of the route
+     * @param permissions the permissions of the agent's role
+     */
+    void plan(String agent, Location from, Location to, Set<String> permissions) {
+        PlannedRoute planned = new PlannedRoute(from, to, permissions);
+        try {
+            planned.route = executor.submit(() -> map.findRoute(from, to, permissions));
+        } catch (RejectedExecutionException e) {
+            return; // already shut down
+        }
+        PlannedRoute previous = plannedRoutes.put(agent, planned);
+        if (previous != null) previous.route.cancel(false);
+    }
+
+    /**
+     * Gets the route planned for the agent if it matches the given parameters or computes the route now.
+     * @param agent the agent that is going to use the route
+     * @param from the start of the route
+     * @param to the destination of the route
+     * @param permissions the permissions of the agent's role
+     * @return the route or null if there is none (see {@link CityMap#findRoute(Location, Location, Set)})
+     */
+    Route findRoute(String agent, Location from, Location to, Set<String> permissions) {
+        PlannedRoute planned = plannedRoutes.remove(agent);
+        if (planned != null && planned.matches(from, to, permissions)) {
+            try {
+                return planned.route.get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                Log.log(Log.Level.ERROR, "Planned route for " + agent + " not available: " + e.getMessage());
+            }
+        }
+        else if (planned != null) planned.route.cancel(false);
+        return map.findRoute(from, to, permissions);
+    }
+
+    /**
+     * Discards all routes that have not been used (e.g. at the end of a step).
+     */
+    void clear() {
+        plannedRoutes.values().forEach(planned -> planned.route.cancel(false));
+        plannedRoutes.clear();
+    }
+
+    /**
+     * Stops all computations. Routes cannot be planned afterwards.
+     */
+    void shutdown() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    /**
+     * A route that is being computed.
+     */
+    private static class PlannedRoute {
+
+        private Location from;
+        private Location to;
+        private Set<String> permissions;
+        private Future<Route> route;
+
+        private PlannedRoute(Location from, Location to, Set<String> permissions) {
+            this.from = from;
+            this.to = to;
+            this.permissions = permissions;
+        }
+
+        private boolean matches(Location from, Location to, Set<String> permissions) {
+            return this.from.equals(from) && this.to.equals(to) && this.permissions.equals(permissions);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package massim.scenario.city.data;
+
+/**
+ * The possible results of actions in the City scenario.
+ */
+public enum ActionResult {
+
+    SUCCESSFUL("successful"),
+    PARTIAL_SUCCESS("successful_partial"),
+    USELESS("useless"),
+    FAILED("failed"),
+    FAILED_COUNTERPART("failed_counterpart"),
+    FAILED_LOCATION("failed_location"),
+    FAILED_NO_ROUTE("failed_no_route"),
+    FAILED_UNKNOWN_ITEM("failed_unknown_item"),
+    FAILED_UNKNOWN_AGENT("failed_unknown_agent"),
+    FAILED_ITEM_AMOUNT("failed_item_amount"),
+    FAILED_CAPACITY("failed_capacity"),
+    FAILED_UNKNOWN_FACILITY("failed_unknown_facility"),
+    FAILED_WRONG_FACILITY("failed_wrong_facility"),
+    FAILED_TOOLS("failed_tools"),
+    FAILED_ITEM_TYPE("failed_item_type"),
+    FAILED_UNKNOWN_JOB("failed_unknown_job"),
+    FAILED_JOB_STATUS("failed_job_status"),
+    FAILED_JOB_TYPE("failed_job_type"),
+    FAILED_WRONG_PARAM("failed_wrong_param"),
+    FAILED_RESOURCES("failed_resources"),
+    FAILED_FACILITY_STATE("failed_facility_state");
+
+    private final String code;
+
+    ActionResult(String code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the result as it is sent to the agents
+     */
+    public String getCode() {
+        return code;
+    }
+}
@@ -40,10 +40,10 @@ public class AuctionJob extends Job{
     public void assign(){
         if (lowestBid != null){
             assignedTeam = currentAuctionWinner;
-            status = JobStatus.ACTIVE;
+            setStatus(JobStatus.ACTIVE);
         }
         else{
-            status = JobStatus.ENDED;
+            setStatus(JobStatus.ENDED);
         }
     }
 
@@ -74,7 +74,7 @@ public class AuctionJob extends Job{
      */
     @Override
     public void activate(){
-        status = JobStatus.AUCTION;
+        setStatus(JobStatus.AUCTION);
     }
 
     /**
@@ -112,6 +112,7 @@ public class AuctionJob extends Job{
                 }
             }
             currentAuctionWinner = team;
+            changed();
         }
     }
 
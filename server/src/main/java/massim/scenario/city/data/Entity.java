@@ -1,13 +1,15 @@
 package massim.scenario.city.data;
 
 import massim.protocol.messagecontent.Action;
-import massim.scenario.city.ActionExecutor;
+
+import java.util.Objects;
 
 /**
  * The body of an agent in the City scenario.
  */
 public class Entity {
 
+    private int id;
     private Role role;
     private Location location;
     private Route route;
@@ -21,9 +23,10 @@ public class Entity {
     private BoundedItemBox items;
 
     private Action lastAction = Action.STD_NO_ACTION;
-    private String lastActionResult = ActionExecutor.SUCCESSFUL;
+    private ActionResult lastActionResult = ActionResult.SUCCESSFUL;
 
-    Entity(Role role, Location location){
+    Entity(int id, Role role, Location location){
+        this.id = id;
         this.role = role;
         skill = role.getBaseSkill();
         battery = role.getBaseBattery();
@@ -35,6 +38,13 @@ public class Entity {
         currentBattery = battery;
     }
 
+    /**
+     * @return the id of the entity (which is also the id of the agent it belongs to)
+     */
+    public int getId(){
+        return id;
+    }
+
     public int getCurrentBattery(){
         return currentBattery;
     }
@@ -51,7 +61,7 @@ public class Entity {
         return location;
     }
 
-    public void setLastActionResult(String lastActionResult){
+    public void setLastActionResult(ActionResult lastActionResult){
         this.lastActionResult = lastActionResult;
     }
 
@@ -146,7 +156,17 @@ public class Entity {
     /**
      * @return the result of the last action
      */
+    /**
+     * @return the result code of the last action (as sent to the agent)
+     */
     public String getLastActionResult() {
+        return lastActionResult.getCode();
+    }
+
+    /**
+     * @return the result of the last action
+     */
+    public ActionResult getLastResult() {
         return lastActionResult;
     }
 
@@ -187,6 +207,25 @@ public class Entity {
         location = newLoc;
     }
 
+    /**
+     * @return a copy of the state that can be changed by actions only affecting this entity (e.g. goto)
+     */
+    public LocalState getLocalState() {
+        return new LocalState(this);
+    }
+
+    /**
+     * Resets the state that can be changed by actions only affecting this entity.
+     * @param state a state previously obtained from {@link #getLocalState()}
+     */
+    public void setLocalState(LocalState state) {
+        location = state.location;
+        route = state.route == null? null : state.route.copy();
+        currentBattery = state.currentBattery;
+        lastAction = state.lastAction;
+        lastActionResult = state.lastActionResult;
+    }
+
     /**
      * Removes all items from this entity.
      */
@@ -240,4 +279,42 @@ public class Entity {
                 break;
         }
     }
+
+    /**
+     * The state of an entity that can be changed by actions only affecting the entity itself.
+     */
+    public static class LocalState {
+
+        private Location location;
+        private Route route;
+        private int currentBattery;
+        private Action lastAction;
+        private ActionResult lastActionResult;
+
+        private LocalState(Entity entity) {
+            location = entity.location;
+            route = entity.route == null? null : entity.route.copy();
+            currentBattery = entity.currentBattery;
+            lastAction = entity.lastAction;
+            lastActionResult = entity.lastActionResult;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            LocalState other = (LocalState) o;
+            return currentBattery == other.currentBattery
+                    && Objects.equals(location, other.location)
+                    && (route == null? other.route == null
+                        : other.route != null && route.getWaypoints().equals(other.route.getWaypoints()))
+                    && lastAction == other.lastAction
+                    && lastActionResult == other.lastActionResult;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, currentBattery, lastActionResult);
+        }
+    }
 }
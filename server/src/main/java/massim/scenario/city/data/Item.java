@@ -13,6 +13,7 @@ public class Item implements Comparable<Item>{
     private Map<Item, Integer> requiredBaseItems;
     private Set<Role> rolesNeeded;
     private int value;
+    private int index = -1;
 
     public Item(String id, int volume, Set<Item> parts, Set<Role> roles){
         this.id = id;
@@ -25,6 +26,17 @@ public class Item implements Comparable<Item>{
         }
     }
 
+    /**
+     * @return the item's index, a number unique among the items of a simulation (assigned at world generation);
+     * all indices of a simulation are consecutive, starting at 0
+     */
+    public int getIndex(){ return index; }
+
+    /**
+     * @param index the item's index (see {@link #getIndex()})
+     */
+    void setIndex(int index){ this.index = index; }
+
     /**
      * @return the item's volume
      */
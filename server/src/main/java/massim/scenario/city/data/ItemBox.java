@@ -3,15 +3,21 @@ package massim.scenario.city.data;
 import massim.protocol.scenario.city.data.ItemAmountData;
 
 import java.util.*;
-import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Container for items.
+ * Amounts are kept in an array indexed by the items' {@link Item#getIndex() indices}, so that looking up, storing and
+ * comparing items does not require any boxing or allocation. Items are iterated in the order of their indices
+ * (i.e. by name).
  */
 public class ItemBox {
 
-    private Map<Item, Integer> items = new TreeMap<>();
+    private final static Item[] NO_TYPES = new Item[0];
+    private final static int[] NO_AMOUNTS = new int[0];
+
+    private Item[] types = NO_TYPES; // the item of each index that has ever been stored (null otherwise)
+    private int[] amounts = NO_AMOUNTS;
 
     /**
      * Stores a number of items in this box.
@@ -20,19 +26,34 @@ public class ItemBox {
      * @return whether the items could be stored
      */
     public boolean store(Item item, int amount){
-        int stored = getItemCount(item);
-        items.put(item, stored + amount);
+        add(item, amount);
         return true;
     }
 
+    /**
+     * Changes the stored number of an item.
+     * @param item an item type
+     * @param amount the amount to add (may be negative)
+     */
+    private void add(Item item, int amount){
+        int index = item.getIndex();
+        if (index >= amounts.length) {
+            int length = Math.max(index + 1, 2 * amounts.length);
+            types = Arrays.copyOf(types, length);
+            amounts = Arrays.copyOf(amounts, length);
+        }
+        types[index] = item;
+        amounts[index] += amount;
+    }
+
     /**
      * Gets stored number of an item.
      * @param item an item type
      * @return the number of items stored in this box
      */
     public int getItemCount(Item item){
-        Integer stored = items.get(item);
-        return stored == null? 0: stored;
+        int index = item.getIndex();
+        return index < amounts.length? amounts[index] : 0;
     }
 
     /**
@@ -44,7 +65,7 @@ public class ItemBox {
     public int remove(Item item, int amount){
         int stored = getItemCount(item);
         int remove = Math.min(amount, stored);
-        items.put(item, stored - remove);
+        add(item, -remove);
         return remove;
     }
 
@@ -57,7 +78,7 @@ public class ItemBox {
     public boolean removeIfPossible(Item item, int amount){
         int stored = getItemCount(item);
         if (amount > stored) return false;
-        items.put(item, stored - amount);
+        add(item, -amount);
         return true;
     }
 
@@ -66,32 +87,39 @@ public class ItemBox {
      * @param box the box to take items from
      */
     public void addAll(ItemBox box) {
-        box.getStoredTypes().forEach(item -> store(item, box.getItemCount(item)));
+        box.forEach(this::store);
     }
 
     /**
      * @return a new set containing all item types currently stored in this box
      */
     public Set<Item> getStoredTypes(){
-        return new HashSet<>(items.keySet());
+        Set<Item> result = new LinkedHashSet<>();
+        for (Item type : types) {
+            if (type != null) result.add(type);
+        }
+        return result;
     }
 
     /**
      * @return a list of all items with their stored quantities (if that amount is > 0)
      */
     public List<ItemAmountData> toItemAmountData(){
-        return items.entrySet().stream()
-                .filter(e -> e.getValue() > 0)
-                .map(e -> new ItemAmountData(e.getKey().getName(), e.getValue()))
-                .collect(Collectors.toList());
+        List<ItemAmountData> result = new ArrayList<>();
+        for (int i = 0; i < amounts.length; i++) {
+            if (amounts[i] > 0) result.add(new ItemAmountData(types[i].getName(), amounts[i]));
+        }
+        return result;
     }
 
     /**
      * Applys the given consumer to all pairs of items with their quantities in this box.
      * @param consumer the consumer to process the data
      */
-    public void forEach(BiConsumer<Item, Integer> consumer){
-        items.forEach(consumer);
+    public void forEach(ObjIntConsumer<Item> consumer){
+        for (int i = 0; i < amounts.length; i++) {
+            if (types[i] != null) consumer.accept(types[i], amounts[i]);
+        }
     }
 
     /**
@@ -99,8 +127,9 @@ public class ItemBox {
      * @return true, if all item quantities in this box are at least present in a given other box
      */
     public boolean isSubset(ItemBox compareBox){
-        for(Item item: getStoredTypes()){
-            if(compareBox.getItemCount(item) < getItemCount(item)) return false;
+        for (int i = 0; i < amounts.length; i++) {
+            int available = i < compareBox.amounts.length? compareBox.amounts[i] : 0;
+            if (available < amounts[i]) return false;
         }
         return true;
     }
@@ -7,6 +7,7 @@ import massim.util.Log;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -15,6 +16,7 @@ import java.util.stream.Collectors;
 public class Job {
 
     private final static AtomicInteger counter = new AtomicInteger();
+    private final static AtomicLong changes = new AtomicLong(); // of all jobs
 
     JobStatus status = JobStatus.FUTURE;
     private String name = "";
@@ -27,6 +29,10 @@ public class Job {
     private ItemBox requiredItems;
     private Map<String, ItemBox> deliveredItems = new HashMap<>();
 
+    // data objects are only created again if the job has changed
+    private JobData perceptData;
+    private JobData snapshotData;
+
     /**
      * Constructor.
      * @param reward the reward of the job
@@ -65,6 +71,7 @@ public class Job {
         int missing = requiredItems.getItemCount(item) - box.getItemCount(item);
         int store = Math.min(missing, amount);
         box.store(item, store);
+        if (store > 0) changed();
         return store;
     }
 
@@ -97,7 +104,7 @@ public class Job {
             ItemBox delivered = getDelivered(team);
             boolean completed = requiredItems.isSubset(delivered);
             if(completed){
-                status = JobStatus.COMPLETED;
+                setStatus(JobStatus.COMPLETED);
                 // transfer partially delivered items
                 returnPartialDeliveries(new HashSet<>(Collections.singletonList(team)));
                 // transfer required items to posting team
@@ -135,6 +142,7 @@ public class Job {
      */
     void acquireName(){
         if(name.equals("")) name = "job" + counter.getAndIncrement();
+        changed();
     }
 
     public int getBeginStep() {
@@ -150,7 +158,7 @@ public class Job {
      * Needs to be called before the job's begin step.
      */
     public void activate() {
-        status = JobStatus.ACTIVE;
+        setStatus(JobStatus.ACTIVE);
     }
 
     /**
@@ -158,7 +166,7 @@ public class Job {
      */
     public void terminate(){
         if(!(status == JobStatus.COMPLETED)){
-           status = JobStatus.ENDED;
+           setStatus(JobStatus.ENDED);
            returnPartialDeliveries(new HashSet<>());
         }
     }
@@ -230,5 +238,48 @@ public class Job {
 
     public void delayEndStep(int delay) {
         endStep += delay;
+        changed();
+    }
+
+    /**
+     * Sets the job's status.
+     * @param status the new status
+     */
+    void setStatus(JobStatus status) {
+        this.status = status;
+        changed();
+    }
+
+    /**
+     * Needs to be called whenever the job's status or data changes.
+     */
+    void changed() {
+        perceptData = null;
+        snapshotData = null;
+        changes.incrementAndGet();
+    }
+
+    /**
+     * @return the number of changes of any job so far (to determine whether anything has changed since)
+     */
+    static long getChanges() {
+        return changes.get();
+    }
+
+    /**
+     * @return the (cached) data object of this job as perceived by agents, i.e. {@link #toJobData(boolean, boolean)}
+     * without delivered items and poster
+     */
+    public JobData getPerceptData() {
+        if (perceptData == null) perceptData = toJobData(false, false);
+        return perceptData;
+    }
+
+    /**
+     * @return the (cached) data object of this job with delivered items and poster
+     */
+    public JobData getSnapshotData() {
+        if (snapshotData == null) snapshotData = toJobData(true, true);
+        return snapshotData;
     }
 }
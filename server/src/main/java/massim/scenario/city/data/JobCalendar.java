@@ -0,0 +1,47 @@
+package massim.scenario.city.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jobs keyed by the step in which something is going to happen to them (e.g. their activation).
+ * Each step's jobs are taken once, after which the step counts as processed: jobs scheduled for a processed step are
+ * ignored, so that nothing is kept for steps that have already passed.
+ */
+class JobCalendar {
+
+    private Map<Integer, List<Job>> jobsByStep = new HashMap<>();
+    private int processed = Integer.MIN_VALUE; // the last step taken
+
+    /**
+     * Adds a job to the given step's jobs.
+     * @param step the step
+     * @param job the job
+     */
+    void schedule(int step, Job job) {
+        if (step <= processed) return;
+        jobsByStep.computeIfAbsent(step, s -> new ArrayList<>()).add(job);
+    }
+
+    /**
+     * Removes and returns the jobs of a step (in the order they were scheduled). Jobs may be scheduled again for
+     * later steps while processing them.
+     * @param step the step (should not be smaller than any step taken before)
+     * @return the jobs of the step
+     */
+    List<Job> take(int step) {
+        processed = Math.max(processed, step);
+        List<Job> jobs = jobsByStep.remove(step);
+        return jobs != null? jobs : Collections.emptyList();
+    }
+
+    /**
+     * @return the number of scheduled jobs
+     */
+    int size() {
+        return jobsByStep.values().stream().mapToInt(List::size).sum();
+    }
+}
@@ -6,17 +6,27 @@ import java.math.BigDecimal;
 
 /**
  * Represents a map location in the city scenario.
+ * The coordinates are rounded to {@link #proximity} decimal places once at construction and kept as fixed-point
+ * integers (in units of 10^-proximity degrees), which are used for equality, hashing and the coordinate getters.
  */
 public class Location {
 
     private double lat;
     private double lon;
     private static int proximity;
-    private static double divisor;
+    private static double factor = 1; // 10^proximity
+
+    // fixed-point coordinates
+    private int fixedProximity = -1; // the proximity the fixed-point values were computed for
+    private long fixedLat;
+    private long fixedLon;
+    private double roundedLat;
+    private double roundedLon;
 
     public Location(double lon, double lat) {
         this.lat = lat;
         this.lon = lon;
+        quantize();
     }
 
     public static int getProximity() {
@@ -27,23 +37,41 @@ public class Location {
      * @return the location's latitude
      */
     public double getLat() {
-        return BigDecimal.valueOf(lat).setScale(proximity, BigDecimal.ROUND_HALF_UP).doubleValue();
+        if (fixedProximity != proximity) quantize();
+        return roundedLat;
     }
 
     /**
      * @return the location's longitude
      */
     public double getLon() {
-        return BigDecimal.valueOf(lon).setScale(proximity, BigDecimal.ROUND_HALF_UP).doubleValue();
+        if (fixedProximity != proximity) quantize();
+        return roundedLon;
+    }
+
+    /**
+     * @return the location's latitude in units of 10^-{@link #getProximity()} degrees
+     */
+    public long getFixedLat() {
+        if (fixedProximity != proximity) quantize();
+        return fixedLat;
+    }
+
+    /**
+     * @return the location's longitude in units of 10^-{@link #getProximity()} degrees
+     */
+    public long getFixedLon() {
+        if (fixedProximity != proximity) quantize();
+        return fixedLon;
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        long temp = approximate(lat);
+        long temp = getFixedLat();
         result = prime * result + (int) (temp ^ (temp >>> 32));
-        temp = approximate(lon);
+        temp = getFixedLon();
         result = prime * result + (int) (temp ^ (temp >>> 32));
         return result;
     }
@@ -57,16 +85,55 @@ public class Location {
         if (obj.getClass() != Location.class)
             return false;
         Location other = (Location) obj;
-        return approximate(lat) == approximate(other.lat) && approximate(lon) == approximate(other.lon);
+        return getFixedLat() == other.getFixedLat() && getFixedLon() == other.getFixedLon();
+    }
+
+    /**
+     * Computes the fixed-point coordinates for the current proximity. Only needs to be repeated if the proximity
+     * is changed after the location was created.
+     */
+    private void quantize() {
+        int p = proximity;
+        double f = factor;
+        fixedLat = fixed(lat, p, f);
+        fixedLon = fixed(lon, p, f);
+        roundedLat = fixedLat / f;
+        roundedLon = fixedLon / f;
+        fixedProximity = p;
+    }
+
+    /**
+     * Rounds a coordinate to the given number of decimal places (half up, like {@link BigDecimal#ROUND_HALF_UP}).
+     * @param coordinate the coordinate to round
+     * @param places the number of decimal places
+     * @param factor 10^places
+     * @return the rounded coordinate in units of 10^-places
+     */
+    private static long fixed(double coordinate, int places, double factor) {
+        double scaled = Math.abs(coordinate) * factor;
+        double fraction = scaled - Math.floor(scaled);
+        // the binary scaling is only inexact close to the decimal midpoint (or beyond the precision of doubles)
+        if (scaled < 1e15 && Math.abs(fraction - .5) > 1e-6) {
+            long rounded = (long) Math.floor(scaled + .5);
+            return coordinate < 0? -rounded : rounded;
+        }
+        return BigDecimal.valueOf(coordinate).setScale(places, BigDecimal.ROUND_HALF_UP).unscaledValue().longValue();
+    }
+
+    /**
+     * @param coordinate a coordinate
+     * @return the coordinate in units of 10^-{@link #getProximity()} degrees (as used for equality of locations)
+     */
+    public static long toFixed(double coordinate) {
+        return fixed(coordinate, proximity, factor);
     }
 
     /**
-     * Calculates a value of a coordinate to determine which coordinates are considered equal
-     * @param coordinate the coordinate to approximate
-     * @return the approximated value of the coordinate
+     * @param coordinate a coordinate
+     * @return the coordinate rounded to {@link #getProximity()} decimal places (as returned by {@link #getLat()})
      */
-    private static long approximate(double coordinate){
-        return Math.round(coordinate / divisor);
+    public static double round(double coordinate) {
+        return toFixed(coordinate) / factor;
     }
 
     /**
@@ -74,8 +141,8 @@ public class Location {
      * @param newProximity the new proximity value
      */
     public static void setProximity(int newProximity){
+        factor = Math.pow(10d, newProximity);
         proximity = newProximity;
-        divisor = 1d / Math.pow(10d, proximity);
     }
 
     /**
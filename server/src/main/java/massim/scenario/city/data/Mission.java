@@ -32,7 +32,7 @@ public class Mission extends AuctionJob {
 
     @Override
     public void activate(){
-        status = JobStatus.ACTIVE;
+        setStatus(JobStatus.ACTIVE);
     }
 
     /**
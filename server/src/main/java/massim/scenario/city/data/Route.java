@@ -1,35 +1,101 @@
 package massim.scenario.city.data;
 
-import java.util.LinkedList;
+import massim.protocol.scenario.city.util.LocationUtil;
+
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents a route in the City scenario (from one {@link Location} to another).
+ * Only the polyline of the route (for air routes: start and target) and a cursor are stored. The cell-sized
+ * waypoints along the polyline are interpolated when they are needed, so the memory of a route does not depend on
+ * its length.
  */
 public class Route {
 
-    private LinkedList<Location> route;
+    private final boolean air;
+    private final double[] lats; // polyline
+    private final double[] lons;
+    private final int cellSize;
+    private final double fractions; // number of cells of an air route
+    private final long fromLat, fromLon; // the start of the route (fixed-point, never a waypoint of car routes)
+    private final Location to;
+
+    private final int length; // the number of all waypoints
+    private int passed = 0; // the number of waypoints passed already
+    private Cursor cursor; // positioned at the next waypoint
+
+    private Route(boolean air, double[] lats, double[] lons, int cellSize, double fractions, Location from,
+                  Location to) {
+        this.air = air;
+        this.lats = lats;
+        this.lons = lons;
+        this.cellSize = cellSize;
+        this.fractions = fractions;
+        this.fromLat = from.getFixedLat();
+        this.fromLon = from.getFixedLon();
+        this.to = to;
+        Cursor counter = new Cursor();
+        int count = 0;
+        while (counter.next()) count++;
+        length = count;
+        cursor = new Cursor();
+    }
+
+    private Route(Route original) {
+        this.air = original.air;
+        this.lats = original.lats;
+        this.lons = original.lons;
+        this.cellSize = original.cellSize;
+        this.fractions = original.fractions;
+        this.fromLat = original.fromLat;
+        this.fromLon = original.fromLon;
+        this.to = original.to;
+        this.length = original.length;
+        this.passed = original.passed;
+        this.cursor = original.cursor == null? null : original.cursor.copy();
+    }
+
+    /**
+     * @return a copy of this route that can be advanced independently
+     */
+    public Route copy() {
+        return new Route(this);
+    }
 
     /**
-     * Creates an empty route.
+     * Creates a straight route with one waypoint per cell and the target as last waypoint.
+     * @param from the start of the route
+     * @param to the target of the route
+     * @param cellSize the distance of two waypoints in meters
+     * @return the new route
      */
-    public Route() {
-        route = new LinkedList<>();
+    public static Route air(Location from, Location to, int cellSize) {
+        double fractions = LocationUtil.calculateRange(from.getLat(), from.getLon(), to.getLat(), to.getLon())
+                / (double) cellSize;
+        return new Route(true, new double[]{from.getLat(), to.getLat()}, new double[]{from.getLon(), to.getLon()},
+                cellSize, fractions, from, to);
     }
 
     /**
-     * Adds the given waypoint to the route.
-     * @param loc a location to add as next waypoint
+     * Creates a route along a polyline with one waypoint per cell (continuing over the polyline's points) and the
+     * target as last waypoint.
+     * @param from the start of the route
+     * @param to the target of the route
+     * @param lats the latitudes of the polyline's points
+     * @param lons the longitudes of the polyline's points
+     * @param cellSize the distance of two waypoints in meters
+     * @return the new route
      */
-    public void addPoint(Location loc){
-        route.add(loc);
+    public static Route along(Location from, Location to, double[] lats, double[] lons, int cellSize) {
+        return new Route(false, lats, lons, cellSize, 0, from, to);
     }
 
     /**
      * @return true if the route has no points/locations left
      */
     public boolean isCompleted(){
-        return route.isEmpty();
+        return passed == length;
     }
 
     /**
@@ -38,11 +104,12 @@ public class Route {
      * @return the new location on this route.
      */
     public Location advance(int speed){
-        Location loc = null;
-        int steps = speed;
-        while (steps-- > 0 && !route.isEmpty()){
-            loc = route.poll();
-        }
+        int steps = Math.min(speed, length - passed);
+        if (steps <= 0) return null;
+        for (int i = 0; i < steps; i++) cursor.next();
+        passed += steps;
+        Location loc = cursor.lastIsTarget? to : new Location(cursor.lon, cursor.lat);
+        if (passed == length) cursor = null; // not needed anymore
         return loc;
     }
 
@@ -59,13 +126,137 @@ public class Route {
      * @return a (new) list containing the waypoints of this route
      */
     public List<Location> getWaypoints(){
-        return new LinkedList<>(route);
+        List<Location> waypoints = new ArrayList<>(getRouteLength());
+        forEachWaypoint((index, lat, lon) -> waypoints.add(new Location(lon, lat)));
+        return waypoints;
+    }
+
+    /**
+     * Passes all remaining waypoints to the given consumer (without creating location objects).
+     * @param consumer receives the index and the coordinates (as given to {@link Location#Location(double, double)})
+     *                 of each waypoint
+     */
+    public void forEachWaypoint(WaypointConsumer consumer){
+        if (cursor == null) return;
+        Cursor remaining = cursor.copy();
+        for (int index = 0; remaining.next(); index++) consumer.accept(index, remaining.lat, remaining.lon);
     }
 
     /**
      * @return the number of waypoints in this route
      */
     public int getRouteLength(){
-        return route == null? 0: route.size();
+        return length - passed;
+    }
+
+    /**
+     * Receives waypoints of a route.
+     */
+    public interface WaypointConsumer {
+        void accept(int index, double lat, double lon);
+    }
+
+    /**
+     * Computes the waypoints of the route one after another.
+     */
+    private class Cursor {
+
+        private double lat, lon; // the current waypoint
+        private boolean lastIsTarget = false; // whether the current waypoint is the target
+
+        // air routes
+        private long cell = 1;
+
+        // car routes
+        private int segment = 0;
+        private double segmentLength = -1; // -1 if the segment has not been started yet
+        private long i = 0;
+        private double remainder = 0;
+
+        // both
+        private boolean computed = false; // whether any intermediate point has been computed
+        private double computedLat, computedLon; // the last computed intermediate point
+        private boolean done = false;
+
+        /**
+         * Moves to the next waypoint.
+         * @return false if there is no next waypoint
+         */
+        private boolean next() {
+            if (done) return false;
+            if (air? nextAir() : nextAlong()) return true;
+            // the target is added unless the last intermediate point is already (close to) it
+            done = true;
+            if (computed && Location.toFixed(computedLat) == to.getFixedLat()
+                    && Location.toFixed(computedLon) == to.getFixedLon()) return false;
+            lat = to.getLat();
+            lon = to.getLon();
+            lastIsTarget = true;
+            return true;
+        }
+
+        private boolean nextAir() {
+            if (cell > fractions) return false;
+            lon = (lons[1] - lons[0]) * cell / fractions + lons[0];
+            lat = (lats[1] - lats[0]) * cell / fractions + lats[0];
+            cell++;
+            setComputed();
+            return true;
+        }
+
+        private boolean nextAlong() {
+            while (segment < lats.length - 1) {
+                if (segmentLength < 0) {
+                    segmentLength = LocationUtil.calculateRange(lats[segment], lons[segment],
+                            lats[segment + 1], lons[segment + 1]);
+                    i = 0;
+                    if (segmentLength == 0) {
+                        nextSegment();
+                        continue;
+                    }
+                }
+                double offset = i * cellSize + remainder;
+                if (offset < segmentLength) {
+                    lon = (lons[segment + 1] - lons[segment]) * offset / segmentLength + lons[segment];
+                    lat = (lats[segment + 1] - lats[segment]) * offset / segmentLength + lats[segment];
+                    i++;
+                    setComputed();
+                    // the start of the route is not a waypoint
+                    if (Location.toFixed(lat) == fromLat && Location.toFixed(lon) == fromLon) continue;
+                    return true;
+                }
+                remainder = offset - segmentLength;
+                nextSegment();
+            }
+            return false;
+        }
+
+        private void nextSegment() {
+            segment++;
+            segmentLength = -1;
+        }
+
+        private void setComputed() {
+            computed = true;
+            computedLat = lat;
+            computedLon = lon;
+        }
+
+        private Cursor copy() {
+            Cursor copy = new Cursor();
+            copy.lat = lat;
+            copy.lon = lon;
+            copy.lastIsTarget = lastIsTarget;
+            copy.cell = cell;
+            copy.segment = segment;
+            copy.segmentLength = segmentLength;
+            copy.i = i;
+            copy.remainder = remainder;
+            copy.computed = computed;
+            copy.computedLat = computedLat;
+            copy.computedLon = computedLon;
+            copy.done = done;
+            return copy;
+        }
     }
 }
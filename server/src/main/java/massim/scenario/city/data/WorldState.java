@@ -1,5 +1,8 @@
 package massim.scenario.city.data;
 
+import massim.protocol.scenario.city.data.AuctionJobData;
+import massim.protocol.scenario.city.data.JobData;
+import massim.protocol.scenario.city.data.MissionData;
 import massim.protocol.scenario.city.data.RoleData;
 import massim.util.Log;
 import massim.util.RNG;
@@ -46,15 +49,34 @@ public class WorldState {
     private List<ResourceNode> resourceNodes = new ArrayList<>();
     private Set<Well> wells = new HashSet<>();
 
-    private Vector<String> agentNames;
-    private Map<String, String> agentToTeam = new HashMap<>();
-    private Map<String, Entity> agentToEntity = new HashMap<>();
-    private Map<Entity, String> entityToAgent = new HashMap<>();
+    // agents by (dense) id, the id of an agent's entity is the id of the agent
+    // names are only resolved to ids when they come in through the protocol
+    private List<String> agentNames = new ArrayList<>();
+    private List<Entity> agentEntities = new ArrayList<>(); // null if an agent has no entity
+    private List<TeamState> agentTeams = new ArrayList<>();
+    private Map<String, Integer> agentIds = new HashMap<>();
+    private List<String> agents; // read-only view of the configured agents
+    private List<Entity> entityList = new ArrayList<>();
     private Map<Location, Facility> facilityByLocation = new HashMap<>();
     private Map<String, TeamState> teams = new HashMap<>();
+    private List<TeamState> teamList;
     private Map<String, Job> jobs = new HashMap<>();
     private List<Job> newJobs = new Vector<>();
 
+    // job lifecycle events and the jobs currently in each (visible) state
+    private JobCalendar jobActivations = new JobCalendar();
+    private JobCalendar jobTerminations = new JobCalendar();
+    private JobCalendar auctionEnds = new JobCalendar();
+    private Set<Job> activeJobs = new LinkedHashSet<>(); // regular jobs only
+    private Set<AuctionJob> auctioningJobs = new LinkedHashSet<>();
+    private Map<String, Set<AuctionJob>> assignedJobs = new HashMap<>(); // active auctions (and missions) by team
+
+    // sorted job data as perceived by the agents, rebuilt only if any job has changed
+    private long jobViewsVersion = -1;
+    private List<JobData> regularJobData;
+    private Map<String, List<AuctionJobData>> auctionJobData = new HashMap<>();
+    private Map<String, List<MissionData>> missionData = new HashMap<>();
+
     private Generator gen;
 
     private Map<String, WellType> wellTypes;
@@ -98,6 +120,10 @@ public class WorldState {
         Log.log(Log.Level.NORMAL, "Configuring cost for goto: " + gotoCost);
         rechargeRate = config.optDouble("rechargeRate", 0.3);
         Log.log(Log.Level.NORMAL, "Configuring recharge rate: " + rechargeRate);
+        int routeCacheSize = config.optInt("routeCacheSize", 10000);
+        Log.log(Log.Level.NORMAL, "Configuring route cache size: " + routeCacheSize);
+        String routingAlgorithm = config.optString("routingAlgorithm", "dijkstrabi");
+        Log.log(Log.Level.NORMAL, "Configuring routing algorithm: " + routingAlgorithm);
 
         // parse upgrades
         JSONArray confUpgrades = config.getJSONArray("upgrades");
@@ -109,15 +135,19 @@ public class WorldState {
 
         parseRoles(config.optJSONObject("roles"));
 
-        cityMap = new CityMap(mapName, cellSize, minLat, maxLat, minLon, maxLon, mapCenter);
+        cityMap = new CityMap(mapName, cellSize, minLat, maxLat, minLon, maxLon, mapCenter, routeCacheSize,
+                routingAlgorithm);
 
-        // store teams
+        // store teams and assign agent ids
+        Map<String, String> agentToTeam = new HashMap<>();
         matchTeams.forEach(team -> {
             Vector<String> agNames = team.getAgentNames();
             agNames.forEach(agName -> agentToTeam.put(agName, team.getName()));
             teams.put(team.getName(), new TeamState(seedCapital, team.getName()));
         });
-        agentNames = new Vector<>(agentToTeam.keySet());
+        teamList = Collections.unmodifiableList(new ArrayList<>(teams.values()));
+        agentToTeam.forEach((agName, team) -> addAgent(agName, teams.get(team)));
+        agents = Collections.unmodifiableList(new ArrayList<>(agentNames));
 
         // check entity roles
         Vector<String> roleSequence = new Vector<>();
@@ -137,6 +167,9 @@ public class WorldState {
 
         // generate the things
         generator.generateItems(new ArrayList<>(roles.values())).forEach(i -> items.put(i.getName(), i));
+        List<Item> itemsByName = new ArrayList<>(items.values());
+        Collections.sort(itemsByName);
+        for (int i = 0; i < itemsByName.size(); i++) itemsByName.get(i).setIndex(i); // index order = name order
         for (Item item : items.values()) {
             if(item.needsAssembly()) assembledItems.add(item);
             else resources.add(item);
@@ -163,7 +196,6 @@ public class WorldState {
         // create entities and map to agents
         matchTeams.forEach(team -> {
             for (int i = 0; i < roleSequence.size(); i++) {
-                Entity e = new Entity(roles.get(roleSequence.get(i)), initialLocations[i]);
                 String agentName;
                 if(team.getAgentNames().size() > i) {
                     agentName = team.getAgentNames().get(i);
@@ -173,10 +205,29 @@ public class WorldState {
                     Log.log(Log.Level.ERROR, "Too few agents configured for team " + team.getName()
                                               + ", using agent name " + agentName + ".");
                 }
-                agentToEntity.put(agentName, e);
-                entityToAgent.put(e, agentName);
+                int id = agentIds.containsKey(agentName)? agentIds.get(agentName)
+                                                         : addAgent(agentName, teams.get(team.getName()));
+                Entity e = new Entity(id, roles.get(roleSequence.get(i)), initialLocations[i]);
+                agentEntities.set(id, e);
+                entityList.add(e);
             }
         });
+        entityList = Collections.unmodifiableList(entityList);
+    }
+
+    /**
+     * Registers an agent (without entity).
+     * @param agentName the agent's name
+     * @param team the agent's team
+     * @return the new id of the agent
+     */
+    private int addAgent(String agentName, TeamState team) {
+        int id = agentNames.size();
+        agentNames.add(agentName);
+        agentEntities.add(null);
+        agentTeams.add(team);
+        agentIds.put(agentName, id);
+        return id;
     }
 
     /**
@@ -221,10 +272,19 @@ public class WorldState {
     }
 
     /**
-     * @return a new list of all agents in no particular order
+     * @return a read-only list of all agents in no particular order (the position of an agent is its id)
      */
     public List<String> getAgents() {
-        return new ArrayList<>(agentNames);
+        return agents;
+    }
+
+    /**
+     * @param agentName the name of an agent
+     * @return the id of the agent or -1 if no such agent exists
+     */
+    public int getAgentId(String agentName) {
+        Integer id = agentIds.get(agentName);
+        return id != null? id : -1;
     }
 
     /**
@@ -232,7 +292,16 @@ public class WorldState {
      * @return the entity connected to that agent or null if no such entity exists
      */
     public Entity getEntity(String agentName) {
-        return agentToEntity.get(agentName);
+        int id = getAgentId(agentName);
+        return id != -1? agentEntities.get(id) : null;
+    }
+
+    /**
+     * @param agentId the id of an agent
+     * @return the entity connected to that agent or null if the agent has no entity
+     */
+    public Entity getEntity(int agentId) {
+        return agentEntities.get(agentId);
     }
 
     /**
@@ -247,7 +316,8 @@ public class WorldState {
      * @return the name of the agent's team or null if no such agent exists
      */
     public String getTeamForAgent(String agentName) {
-        return agentToTeam.get(agentName);
+        int id = getAgentId(agentName);
+        return id != -1? agentTeams.get(id).getName() : null;
     }
 
     /**
@@ -287,10 +357,10 @@ public class WorldState {
     }
 
     /**
-     * @return a set containing all entities in the simulation
+     * @return a read-only list containing all entities in the simulation
      */
-    public Set<Entity> getEntities() {
-        return new HashSet<>(entityToAgent.keySet());
+    public List<Entity> getEntities() {
+        return entityList;
     }
 
     /**
@@ -310,6 +380,14 @@ public class WorldState {
         return teams.get(name);
     }
 
+    /**
+     * @param e an entity in this world
+     * @return the state of the team the entity belongs to
+     */
+    public TeamState getTeam(Entity e){
+        return agentTeams.get(e.getId());
+    }
+
     /**
      * @param name name of a job
      * @return the job with the given name or null if no such job exists
@@ -335,10 +413,153 @@ public class WorldState {
         newJobs.forEach(job -> {
             job.acquireName();
             jobs.put(job.getName(), job);
+            jobActivations.schedule(job.getBeginStep(), job);
+            jobTerminations.schedule(job.getEndStep(), job);
+            if (job instanceof AuctionJob)
+                auctionEnds.schedule(job.getBeginStep() + ((AuctionJob) job).getAuctionTime() - 1, job);
+            indexJob(job); // missions are already active
         });
         newJobs.clear();
     }
 
+    /**
+     * Activates all jobs beginning in the given step.
+     * @param step the current step
+     */
+    public void activateJobs(int step) {
+        jobActivations.take(step).forEach(job -> {
+            job.activate();
+            indexJob(job);
+        });
+    }
+
+    /**
+     * Terminates all jobs ending in the given step. Jobs whose end has been delayed are kept for their new end.
+     * @param step the current step
+     */
+    public void terminateJobs(int step) {
+        jobTerminations.take(step).forEach(job -> {
+            if (job.getEndStep() != step) jobTerminations.schedule(job.getEndStep(), job);
+            else job.terminate();
+        });
+    }
+
+    /**
+     * Assigns all auction jobs whose auction ends in the given step (if not assigned yet).
+     * Auctions that have been extended are kept for their new end.
+     * @param step the current step
+     */
+    public void assignAuctions(int step) {
+        auctionEnds.take(step).forEach(job -> {
+            AuctionJob auction = (AuctionJob) job;
+            int auctionEnd = auction.getBeginStep() + auction.getAuctionTime() - 1;
+            if (auctionEnd != step) auctionEnds.schedule(auctionEnd, auction);
+            else if (!auction.isAssigned()) {
+                auction.assign();
+                indexJob(auction);
+            }
+        });
+    }
+
+    /**
+     * Adds a job to the index of its current state. Jobs are removed from the indexes lazily, as soon as they are
+     * looked up in a different state.
+     * @param job the job to index
+     */
+    private void indexJob(Job job) {
+        if (job.getStatus() == Job.JobStatus.AUCTION) auctioningJobs.add((AuctionJob) job);
+        else if (job.isActive()) {
+            if (job instanceof AuctionJob) {
+                AuctionJob auction = (AuctionJob) job;
+                assignedJobs.computeIfAbsent(auction.getAuctionWinner(), t -> new LinkedHashSet<>()).add(auction);
+            }
+            else activeJobs.add(job);
+        }
+    }
+
+    /**
+     * @return the sorted data of all active regular jobs (must not be modified)
+     */
+    public List<JobData> getRegularJobData() {
+        updateJobViews();
+        return regularJobData;
+    }
+
+    /**
+     * @param team name of a team
+     * @return the sorted data of all auctions visible to the team (must not be modified), i.e. auctions that are
+     * currently being auctioned and active auctions assigned to the team
+     */
+    public List<AuctionJobData> getAuctionJobData(String team) {
+        updateJobViews();
+        return auctionJobData.getOrDefault(team, Collections.emptyList());
+    }
+
+    /**
+     * @param team name of a team
+     * @return the sorted data of all active missions of the team (must not be modified)
+     */
+    public List<MissionData> getMissionData(String team) {
+        updateJobViews();
+        return missionData.getOrDefault(team, Collections.emptyList());
+    }
+
+    /**
+     * Rebuilds the job data lists if any job has been added or changed since they have been built.
+     */
+    private void updateJobViews() {
+        long version = Job.getChanges();
+        if (version == jobViewsVersion) return;
+        jobViewsVersion = version;
+
+        List<JobData> regular = new ArrayList<>();
+        getActiveJobs().forEach(job -> regular.add(job.getPerceptData()));
+        Collections.sort(regular);
+        regularJobData = Collections.unmodifiableList(regular);
+
+        List<AuctionJobData> auctioning = new ArrayList<>();
+        getAuctioningJobs().forEach(job -> auctioning.add((AuctionJobData) job.getPerceptData()));
+        for (String team : teams.keySet()) {
+            List<AuctionJobData> teamAuctions = new ArrayList<>(auctioning);
+            List<MissionData> teamMissions = new ArrayList<>();
+            for (AuctionJob job : getAssignedJobs(team)) {
+                if (job instanceof Mission) teamMissions.add((MissionData) job.getPerceptData());
+                else teamAuctions.add((AuctionJobData) job.getPerceptData());
+            }
+            Collections.sort(teamAuctions);
+            Collections.sort(teamMissions);
+            auctionJobData.put(team, Collections.unmodifiableList(teamAuctions));
+            missionData.put(team, Collections.unmodifiableList(teamMissions));
+        }
+    }
+
+    /**
+     * @return a new list of all active regular (i.e. not auctioned) jobs
+     */
+    public List<Job> getActiveJobs() {
+        activeJobs.removeIf(job -> !job.isActive());
+        return new ArrayList<>(activeJobs);
+    }
+
+    /**
+     * @return a new list of all auction jobs that are currently being auctioned
+     */
+    public List<AuctionJob> getAuctioningJobs() {
+        auctioningJobs.removeIf(job -> job.getStatus() != Job.JobStatus.AUCTION);
+        return new ArrayList<>(auctioningJobs);
+    }
+
+    /**
+     * @param team name of a team
+     * @return a new list of all active auction jobs (including missions) assigned to the team
+     */
+    public List<AuctionJob> getAssignedJobs(String team) {
+        Set<AuctionJob> assigned = assignedJobs.get(team);
+        if (assigned == null) return new ArrayList<>();
+        assigned.removeIf(job -> !job.isActive());
+        return new ArrayList<>(assigned);
+    }
+
     /**
      * @return the probability for any action to be random_fail
      */
@@ -355,7 +576,7 @@ public class WorldState {
      * @return the name of the agent connected to the entity or null if this entity does not exist
      */
     public String getAgentForEntity(Entity e){
-        return entityToAgent.get(e);
+        return agentNames.get(e.getId());
     }
 
     public List<Dump> getDumps() {
@@ -383,17 +604,17 @@ public class WorldState {
     public Set<Well> getWells() { return wells; }
 
     /**
-     * @return a new list of all team states
+     * @return a read-only list of all team states
      */
     public List<TeamState> getTeams() {
-        return new ArrayList<>(teams.values());
+        return teamList;
     }
 
     /**
-     * @return a new set of all jobs regardless of their state
+     * @return a read-only view of all jobs regardless of their state
      */
-    public Set<Job> getJobs() {
-        return new HashSet<>(jobs.values());
+    public Collection<Job> getJobs() {
+        return Collections.unmodifiableCollection(jobs.values());
     }
 
     /**
@@ -404,10 +625,10 @@ public class WorldState {
     }
 
     /**
-     * @return a list of all facilities in this world
+     * @return a read-only view of all facilities in this world
      */
-    public List<Facility> getFacilities(){
-        return new ArrayList<>(facilities.values());
+    public Collection<Facility> getFacilities(){
+        return Collections.unmodifiableCollection(facilities.values());
     }
 
     /**
@@ -17,16 +17,16 @@ public class Storage extends Facility{
     private int storedVolume = 0;
 
     /**
-     * Mapping team name to a map from items to item amounts.
+     * Mapping team name to the items stored for the team.
      */
-    private Map<String, Map<Item, Integer>> storedItems = new HashMap<>();
+    private Map<String, ItemBox> storedItems = new HashMap<>();
     private Map<String, ItemBox> deliveredItems = new HashMap<>();
 
     public Storage(String name, Location location, int capacity, Set<String> teamNames) {
         super(name, location);
         this.capacity = capacity;
         teamNames.forEach(t -> {
-            storedItems.put(t, new HashMap<>());
+            storedItems.put(t, new ItemBox());
             deliveredItems.put(t, new ItemBox());
         });
     }
@@ -40,12 +40,10 @@ public class Storage extends Facility{
      */
     public boolean store(Item item, int amount, String team){
         if(item == null || amount < 0 || team == null) return false;
-        Map<Item, Integer> teamItems = storedItems.get(team);
-        Integer storedAmount = teamItems.get(item);
-        if(storedAmount == null) storedAmount = 0;
+        ItemBox teamItems = storedItems.get(team);
         int newVolume = storedVolume + (amount * item.getVolume());
         if (newVolume > capacity) return false;
-        teamItems.put(item, storedAmount + amount);
+        teamItems.store(item, amount);
         storedVolume = newVolume;
         return true;
     }
@@ -64,10 +62,9 @@ public class Storage extends Facility{
      * @return the amount of an item for the given team.
      */
     public int getStored(Item item, String team) {
-        Map<Item, Integer> map = storedItems.get(team);
-        if (item == null || map == null || team == null) return 0;
-        Integer amount = map.get(item);
-        return amount == null? 0: amount;
+        ItemBox box = storedItems.get(team);
+        if (item == null || box == null || team == null) return 0;
+        return box.getItemCount(item);
     }
 
     /**
@@ -88,12 +85,10 @@ public class Storage extends Facility{
      * @param team name of the team
      */
     public void removeStored(Item item, int amount, String team) {
-        int current = getStored(item, team);
-        Map<Item, Integer> map = storedItems.get(team);
-        if(map != null){
-            int newAmount = Math.max(current - amount, 0);
-            map.put(item, newAmount);
-            storedVolume -= item.getVolume() * (current - newAmount);
+        ItemBox box = storedItems.get(team);
+        if(box != null){
+            int removed = box.remove(item, Math.max(amount, 0));
+            storedVolume -= item.getVolume() * removed;
         }
     }
 
@@ -151,20 +146,17 @@ public class Storage extends Facility{
     private List<StoredData> getStoredForTeam(String team){
         List<StoredData> stored = new Vector<>();
         ItemBox dBox = deliveredItems.get(team);
-        Map<Item, Integer> sBox = storedItems.get(team);
-        Set<Item> items = new HashSet<>();
-        if(dBox != null) items.addAll(dBox.getStoredTypes());
-        if(sBox != null) items.addAll(sBox.keySet());
-
-        if(items.size() > 0) {
-            for (Item item : items) {
-                // add an entry if item is either stored or delivered for the team
-                int storedAmount = getStored(item, team);
-                int deliveredAmount = getDelivered(item, team);
-                if (storedAmount > 0 || deliveredAmount > 0)
-                    stored.add(new StoredData(item.getName(), storedAmount, deliveredAmount));
-            }
-        }
+        ItemBox sBox = storedItems.get(team);
+        // add an entry for each item that is either stored or delivered for the team
+        if(sBox != null) sBox.forEach((item, storedAmount) -> {
+            int deliveredAmount = getDelivered(item, team);
+            if (storedAmount > 0 || deliveredAmount > 0)
+                stored.add(new StoredData(item.getName(), storedAmount, deliveredAmount));
+        });
+        if(dBox != null) dBox.forEach((item, deliveredAmount) -> {
+            if (deliveredAmount > 0 && getStored(item, team) <= 0)
+                stored.add(new StoredData(item.getName(), getStored(item, team), deliveredAmount));
+        });
         return stored;
     }
 
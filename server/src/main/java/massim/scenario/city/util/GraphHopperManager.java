@@ -15,6 +15,7 @@ public class GraphHopperManager {
 
 	private static String mapName;
 	private static GraphHopper hopper;
+	private static RoadComponents roadComponents;
 
     /**
      * Creates a new GraphHopper for the given map name.
@@ -30,11 +31,13 @@ public class GraphHopperManager {
 		hopper.setCHEnabled(false); // CH does not work with shortest weighting (at the moment)
 		
 		// where to store GH files?
-		hopper.setGraphHopperLocation("graphs" + File.separator + mapName);
+		String location = "graphs" + File.separator + mapName;
+		hopper.setGraphHopperLocation(location);
 		hopper.setEncodingManager(new EncodingManager("car"));
 
 		// this may take a few minutes
 		hopper.importOrLoad();
+		roadComponents = RoadComponents.loadOrCompute(hopper, "car", location);
 	}
 
     /**
@@ -43,4 +46,11 @@ public class GraphHopperManager {
 	public static GraphHopper getHopper(){
 		return hopper;
 	}
+
+    /**
+     * @return the strongly connected components of the current map's roads
+     */
+	public static RoadComponents getRoadComponents(){
+		return roadComponents;
+	}
 }
@@ -0,0 +1,183 @@
+package massim.scenario.city.util;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import massim.util.Log;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of the road graph (for cars).
+ * Two locations are connected by routes in both directions iff they are snapped to the same component, so checking
+ * reachability does not require any routing. The components are computed once per map and stored next to the
+ * GraphHopper files.
+ */
+public class RoadComponents {
+
+    private final static String FILE_NAME = "massim_components";
+
+    /**
+     * Component id of locations that cannot be snapped or are not strongly connected to any other location.
+     */
+    public final static int NONE = -1;
+
+    private GraphHopper hopper;
+    private EdgeFilter snapFilter;
+    private int[] components; // component id of each node
+
+    private RoadComponents(GraphHopper hopper, FlagEncoder encoder, int[] components) {
+        this.hopper = hopper;
+        this.snapFilter = new DefaultEdgeFilter(encoder); // the same filter GH uses to snap route requests
+        this.components = components;
+    }
+
+    /**
+     * Loads the components of the hopper's graph from the given directory or computes (and stores) them if they
+     * have not been stored yet.
+     * @param hopper the GraphHopper with the graph already loaded
+     * @param vehicle the vehicle to compute the components for
+     * @param directory where to store the components
+     * @return the components of the graph
+     */
+    public static RoadComponents loadOrCompute(GraphHopper hopper, String vehicle, String directory) {
+        FlagEncoder encoder = hopper.getEncodingManager().getEncoder(vehicle);
+        Graph graph = hopper.getGraphHopperStorage();
+        File file = new File(directory, FILE_NAME);
+        int[] components = load(file, graph.getNodes());
+        if (components == null) {
+            Log.log(Log.Level.NORMAL, "Computing road components");
+            components = compute(graph, encoder);
+            save(file, components);
+        }
+        return new RoadComponents(hopper, encoder, components);
+    }
+
+    /**
+     * Snaps a location to the road graph (like a route request would) and determines its component.
+     * @param lat the location's latitude
+     * @param lon the location's longitude
+     * @return the component id or {@link #NONE}
+     */
+    public int getComponent(double lat, double lon) {
+        QueryResult qr = hopper.getLocationIndex().findClosest(lat, lon, snapFilter);
+        if (!qr.isValid()) return NONE;
+        if (qr.getSnappedPosition() == QueryResult.Position.TOWER) return components[qr.getClosestNode()];
+        // a location on an edge can be left and entered (only) through the edge's end nodes
+        EdgeIteratorState edge = qr.getClosestEdge();
+        int component = components[edge.getBaseNode()];
+        return component == components[edge.getAdjNode()]? component : NONE;
+    }
+
+    /**
+     * Computes the components of a graph.
+     * @param graph the graph
+     * @param encoder the encoder determining which edges can be used in which direction
+     * @return the component id of each node
+     */
+    private static int[] compute(Graph graph, FlagEncoder encoder) {
+        int nodes = graph.getNodes();
+        EdgeExplorer explorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        int[] start = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) start[node + 1]++;
+        }
+        for (int node = 0; node < nodes; node++) start[node + 1] += start[node];
+        int[] targets = new int[start[nodes]];
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            for (int i = start[node]; iter.next(); i++) targets[i] = iter.getAdjNode();
+        }
+        return components(start, targets);
+    }
+
+    /**
+     * Finds the strongly connected components of a graph (Tarjan's algorithm without recursion, since road graphs
+     * are far too deep for the call stack).
+     * @param start the successors of node n are targets[start[n]] to targets[start[n + 1] - 1]
+     * @param targets the successors of all nodes
+     * @return the component id of each node (ids are consecutive, starting at 0)
+     */
+    static int[] components(int[] start, int[] targets) {
+        int nodes = start.length - 1;
+        int[] index = new int[nodes]; // discovery index + 1 (0 if not discovered yet)
+        int[] lowLink = new int[nodes];
+        int[] component = new int[nodes];
+        Arrays.fill(component, NONE);
+        int[] nextEdge = new int[nodes]; // the next successor to visit of each node on the call stack
+        int[] callStack = new int[nodes];
+        int[] stack = new int[nodes];
+        int stackSize = 0, discovered = 0, components = 0;
+
+        for (int root = 0; root < nodes; root++) {
+            if (index[root] != 0) continue;
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = ++discovered;
+            nextEdge[root] = start[root];
+            stack[stackSize++] = root;
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (nextEdge[node] < start[node + 1]) {
+                    int next = targets[nextEdge[node]++];
+                    if (index[next] == 0) { // descend
+                        index[next] = lowLink[next] = ++discovered;
+                        nextEdge[next] = start[next];
+                        stack[stackSize++] = next;
+                        callStack[depth++] = next;
+                    }
+                    else if (component[next] == NONE) lowLink[node] = Math.min(lowLink[node], index[next]);
+                    continue;
+                }
+                // all successors visited
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        component[member] = components;
+                    } while (member != node);
+                    components++;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * @return the stored components or null if none are stored for a graph of this size
+     */
+    private static int[] load(File file, int nodes) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != nodes) return null;
+            int[] components = new int[nodes];
+            for (int i = 0; i < nodes; i++) components[i] = in.readInt();
+            return components;
+        } catch (IOException e) {
+            Log.log(Log.Level.ERROR, "Could not load road components: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void save(File file, int[] components) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(components.length);
+            for (int component : components) out.writeInt(component);
+        } catch (IOException e) {
+            Log.log(Log.Level.ERROR, "Could not store road components: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package massim.scenario.city.util;
+
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of routing results, evicting the least recently used entry when full.
+ * Entries are keyed by the (fixed-point) coordinates of start and target as used for the query and by the vehicle,
+ * so a hit yields exactly what the query would have returned. Also remembers if no route exists.
+ */
+public class RouteCache {
+
+    private final static Polyline NO_ROUTE = new Polyline(new double[0], new double[0]);
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, Polyline> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxSize the maximum number of routes to keep (0 to disable caching)
+     */
+    public RouteCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        entries = new LinkedHashMap<Key, Polyline>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Polyline> eldest) {
+                return size() > RouteCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Looks up a route or computes (and stores) it if it is not cached. The computation is done without holding the
+     * cache's lock, so different routes can be computed concurrently.
+     * @param key identifies the query
+     * @param query computes the route's polyline or null if no route exists
+     * @return the polyline of the route or null if no route exists
+     */
+    public Polyline get(Key key, Supplier<Polyline> query) {
+        synchronized (this) {
+            Polyline cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached == NO_ROUTE? null : cached;
+            }
+            misses++;
+        }
+        Polyline result = query.get();
+        if (maxSize > 0) {
+            synchronized (this) {
+                entries.put(key, result == null? NO_ROUTE : result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of lookups that could be answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that required a query
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of routes currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return size and hit/miss counts of the cache
+     */
+    public synchronized JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("size", entries.size());
+        json.put("maxSize", maxSize);
+        json.put("hits", hits);
+        json.put("misses", misses);
+        return json;
+    }
+
+    /**
+     * The (immutable) points of a route. The arrays must not be changed.
+     */
+    public static class Polyline {
+
+        private final double[] lats;
+        private final double[] lons;
+
+        public Polyline(double[] lats, double[] lons) {
+            this.lats = lats;
+            this.lons = lons;
+        }
+
+        public double[] getLats() {
+            return lats;
+        }
+
+        public double[] getLons() {
+            return lons;
+        }
+    }
+
+    /**
+     * Identifies a routing query.
+     */
+    public static class Key {
+
+        private final String vehicle;
+        private final long fromLat, fromLon, toLat, toLon;
+
+        /**
+         * @param vehicle the vehicle (profile) the route is computed for
+         * @param fromLat the start's latitude (fixed-point)
+         * @param fromLon the start's longitude (fixed-point)
+         * @param toLat the target's latitude (fixed-point)
+         * @param toLon the target's longitude (fixed-point)
+         */
+        public Key(String vehicle, long fromLat, long fromLon, long toLat, long toLon) {
+            this.vehicle = vehicle;
+            this.fromLat = fromLat;
+            this.fromLon = fromLon;
+            this.toLat = toLat;
+            this.toLon = toLon;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return fromLat == key.fromLat && fromLon == key.fromLon && toLat == key.toLat && toLon == key.toLon
+                    && vehicle.equals(key.vehicle);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(vehicle, fromLat, fromLon, toLat, toLon);
+        }
+    }
+}
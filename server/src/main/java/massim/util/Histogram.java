@@ -0,0 +1,88 @@
+package massim.util;
+
+import org.json.JSONObject;
+
+/**
+ * A histogram of durations with exponentially growing buckets (powers of two of microseconds).
+ * Recording is cheap and does not allocate, so it can be done for each message.
+ */
+public class Histogram {
+
+    private final static int BUCKETS = 32;
+
+    private long[] buckets = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Records one duration.
+     * @param nanos the duration in nanoseconds (negative values are recorded as 0)
+     */
+    public synchronized void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket]++;
+        count++;
+        sum += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Removes all recorded durations.
+     */
+    public synchronized void reset() {
+        buckets = new long[BUCKETS];
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @param fraction the fraction of recorded durations (between 0 and 1)
+     * @return the upper bound (in ms) of the bucket containing the given percentile or 0 if nothing was recorded
+     */
+    public synchronized double getPercentile(double fraction) {
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) return Math.min(upperBound(i), max / 1e6);
+        }
+        return 0;
+    }
+
+    /**
+     * @return count, mean, max and some percentiles (in ms) as well as the non-empty buckets (keyed by their upper
+     * bound in ms)
+     */
+    public synchronized JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        json.put("mean", count == 0? 0 : sum / 1e6 / count);
+        json.put("max", max / 1e6);
+        json.put("p50", getPercentile(.5));
+        json.put("p90", getPercentile(.9));
+        json.put("p99", getPercentile(.99));
+        JSONObject bucketJSON = new JSONObject();
+        for (int i = 0; i < BUCKETS; i++)
+            if (buckets[i] > 0) bucketJSON.put(String.valueOf(upperBound(i)), buckets[i]);
+        json.put("buckets", bucketJSON);
+        return json;
+    }
+
+    /**
+     * @return the (exclusive) upper bound of the given bucket in ms
+     */
+    private static double upperBound(int bucket) {
+        return (1L << bucket) / 1e3;
+    }
+}
@@ -0,0 +1,37 @@
+package massim;
+
+import massim.util.Histogram;
+import org.junit.Test;
+
+/**
+ * Test coalescing of queued messages.
+ */
+public class SendQueueTest {
+
+    private byte[] simStart = {1}, request1 = {2}, request2 = {3}, simEnd = {4};
+
+    @Test
+    public void keepsLifecycleMessagesAndOnlyNewestRequest(){
+        SendQueue queue = new SendQueue(new Histogram());
+        queue.add(simStart, false);
+        queue.add(request1, true);
+        queue.add(request2, true);
+        queue.add(simEnd, false);
+
+        assert queue.poll() == simStart;
+        assert queue.poll() == simEnd; // request2 superseded by the end of the simulation
+        assert queue.poll() == null;
+        assert queue.getDropped() == 2;
+    }
+
+    @Test
+    public void doesNotDropSentRequests(){
+        SendQueue queue = new SendQueue(new Histogram());
+        queue.add(request1, true);
+        assert queue.poll() == request1;
+        assert !queue.dropActionRequest();
+        queue.add(request2, true);
+        assert queue.poll() == request2;
+        assert queue.getDropped() == 0;
+    }
+}
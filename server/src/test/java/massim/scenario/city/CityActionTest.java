@@ -0,0 +1,32 @@
+package massim.scenario.city;
+
+import massim.protocol.messagecontent.Action;
+import massim.protocol.scenario.city.Actions;
+import org.junit.Test;
+
+/**
+ * Test decoding of action types.
+ */
+public class CityActionTest {
+
+    @Test
+    public void everyActionHasAType(){
+        for (String name : Actions.ALL_ACTIONS) {
+            assert CityAction.Type.of(name) != CityAction.Type.UNKNOWN : name;
+        }
+        assert CityAction.Type.of(Action.RANDOM_FAIL) == CityAction.Type.RANDOM_FAIL;
+        assert CityAction.Type.of("fly") == CityAction.Type.UNKNOWN;
+        assert CityAction.Type.of(null) == CityAction.Type.UNKNOWN;
+    }
+
+    @Test
+    public void localityMatchesType(){
+        assert ActionExecutor.isLocal(null);
+        assert ActionExecutor.isLocal(Action.STD_NO_ACTION);
+        assert ActionExecutor.isLocal(new Action(Actions.GO_TO, "shop1"));
+        assert !ActionExecutor.isLocal(new Action(Actions.CHARGE));
+        assert !ActionExecutor.isLocal(new Action(Actions.RECHARGE));
+        assert !ActionExecutor.isLocal(new Action(Actions.GIVE, "a", "item0", "1"));
+        assert !ActionExecutor.isLocal(new Action("fly"));
+    }
+}
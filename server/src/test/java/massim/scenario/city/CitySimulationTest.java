@@ -11,6 +11,8 @@ import massim.protocol.scenario.city.percept.CityInitialPercept;
 import massim.protocol.scenario.city.percept.CityStepPercept;
 import massim.scenario.city.data.*;
 import massim.scenario.city.data.facilities.*;
+import massim.scenario.city.util.GraphHopperManager;
+import massim.scenario.city.util.RouteCache;
 import massim.util.Conversions;
 import massim.util.IOUtil;
 import massim.util.Log;
@@ -721,6 +723,61 @@ public class CitySimulationTest {
         }
     }
 
+    /**
+     * Executes the same step serially and in parallel and compares the resulting entities.
+     */
+    @Test
+    public void parallelExecutionIsLikeSerial(){
+        WorldState world = sim.getWorldState();
+        Map<String, Entity.LocalState> initialStates = getLocalStates();
+
+        // one agent builds a well where most others charge, so the result of a charge depends on the order
+        double lat = world.getMinLat() + (world.getMaxLat() - world.getMinLat()) / 3;
+        double lon = world.getMinLon() + (world.getMaxLon() - world.getMinLon()) / 3;
+        Location loc = new Location(lon, lat);
+        assert world.getFacilityByLocation(loc) == null;
+        world.getAgents().forEach(agent -> world.getEntity(agent).setLocation(loc));
+        TeamState team = world.getTeam("A");
+        WellType wellType = world.getWellTypes().iterator().next();
+        team.addMassium(wellType.getCost());
+
+        Map<String, Action> actions = buildActionMap();
+        actions.replaceAll((agent, action) -> new Action("charge"));
+        actions.put("agentA1", new Action("build", wellType.getName()));
+        actions.put("agentA2", new Action("goto", "shop1"));
+        actions.put("agentA3", new Action("goto",
+                String.valueOf(world.getMinLat()), String.valueOf(world.getMinLon())));
+        actions.put("agentB1", new Action("continue"));
+        actions.put("agentB2", new Action("abort"));
+
+        sim.preStep(step);
+        Map<String, Entity.LocalState> serialStates = executeStep("serial", actions);
+        Map<String, Entity.LocalState> parallelStates = executeStep("parallel", actions);
+        assert serialStates.equals(parallelStates);
+
+        team.subMassium(wellType.getCost());
+        initialStates.forEach((agent, state) -> world.getEntity(agent).setLocalState(state));
+    }
+
+    /**
+     * Routes random pairs of locations with bidirectional A* and with bidirectional Dijkstra and compares the routes.
+     */
+    @Test
+    public void aStarFindsDijkstraRoutes(){
+        CityMap map = sim.getWorldState().getMap();
+        Set<String> roads = Collections.singleton(GraphHopperManager.PERMISSION_ROAD);
+        for (int i = 0; i < 200; i++) {
+            Location from = map.getRandomLocation(roads, 1000);
+            Location to = map.getRandomLocation(roads, 1000);
+            RouteCache.Polyline dijkstra = map.queryGH(from, to, "dijkstrabi");
+            RouteCache.Polyline aStar = map.queryGH(from, to, "astarbi");
+            assert dijkstra != null && aStar != null;
+            String pair = from.getLat() + "," + from.getLon() + " -> " + to.getLat() + "," + to.getLon();
+            assert Arrays.equals(dijkstra.getLats(), aStar.getLats()) : pair;
+            assert Arrays.equals(dijkstra.getLons(), aStar.getLons()) : pair;
+        }
+    }
+
     @Test
     public void stuckAgentsAreRescued(){
         WorldState world = sim.getWorldState();
@@ -732,11 +789,11 @@ public class CitySimulationTest {
         Map<String, Action> actions = buildActionMap();
         actions.put("agentA1", new Action("goto", "shop3"));
         sim.step(step, actions);
-        assert e1.getLastActionResult().equals(ActionExecutor.FAILED_NO_ROUTE);
+        assert e1.getLastResult() == ActionResult.FAILED_NO_ROUTE;
         sim.preStep(step);
         actions.put("agentA1", new Action("goto", "shop3"));
         sim.step(step, actions);
-        assert !e1.getLastActionResult().equals(ActionExecutor.FAILED_NO_ROUTE);
+        assert e1.getLastResult() != ActionResult.FAILED_NO_ROUTE;
     }
 
     /**
@@ -747,6 +804,46 @@ public class CitySimulationTest {
                 .collect(Collectors.toMap(ag -> ag, ag -> new Action("continue")));
     }
 
+    /**
+     * Executes the current step with the given kind of action execution and undoes the step's effects on entities,
+     * wells and money afterwards (the random generator is reset before, so the step can be repeated exactly).
+     * @param actionExecution the kind of action execution to use (and keep using)
+     * @param actions the actions of all agents
+     * @return the local states of all entities right after the step
+     */
+    private static Map<String, Entity.LocalState> executeStep(String actionExecution, Map<String, Action> actions){
+        WorldState world = sim.getWorldState();
+        Map<String, Entity.LocalState> initialStates = getLocalStates();
+        Set<Well> wells = new HashSet<>(world.getWells());
+        Map<TeamState, Long> massium = world.getTeams().stream()
+                .collect(Collectors.toMap(team -> team, TeamState::getMassium));
+
+        sim.setActionExecution(actionExecution);
+        RNG.initialize(seed + step);
+        sim.step(step, new HashMap<>(actions));
+        Map<String, Entity.LocalState> states = getLocalStates();
+
+        world.getWells().stream()
+                .filter(well -> !wells.contains(well))
+                .collect(Collectors.toList())
+                .forEach(world::removeWell);
+        massium.forEach((team, amount) -> {
+            team.subMassium(team.getMassium());
+            team.addMassium(amount.intValue());
+        });
+        initialStates.forEach((agent, state) -> world.getEntity(agent).setLocalState(state));
+        return states;
+    }
+
+    /**
+     * @return the current local states of all entities by agent name
+     */
+    private static Map<String, Entity.LocalState> getLocalStates(){
+        WorldState world = sim.getWorldState();
+        return world.getAgents().stream()
+                .collect(Collectors.toMap(agent -> agent, agent -> world.getEntity(agent).getLocalState()));
+    }
+
     /**
      * Checks if a request action contains the correct percept and returns it.
      * @param agent name of an agent
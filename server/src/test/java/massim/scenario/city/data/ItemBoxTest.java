@@ -0,0 +1,53 @@
+package massim.scenario.city.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.stream.Collectors;
+
+/**
+ * Test storing items in boxes.
+ */
+public class ItemBoxTest {
+
+    private static Item item(int index, int volume){
+        Item item = new Item("item" + index, volume, new HashSet<>(), new HashSet<>());
+        item.setIndex(index);
+        return item;
+    }
+
+    @Test
+    public void storesAndComparesItems(){
+        Item a = item(0, 10), b = item(3, 5);
+        ItemBox box = new ItemBox();
+        box.store(b, 2);
+        box.store(a, 1);
+        assert box.getItemCount(a) == 1 && box.getItemCount(b) == 2;
+        assert box.remove(b, 5) == 2;
+        assert !box.removeIfPossible(a, 2);
+        assert box.getStoredTypes().equals(new HashSet<>(Arrays.asList(a, b))); // also if none are left
+        assert box.toItemAmountData().size() == 1;
+
+        ItemBox other = new ItemBox();
+        assert !box.isSubset(other);
+        other.addAll(box);
+        other.store(item(7, 1), 1);
+        assert box.isSubset(other) && !other.isSubset(box);
+    }
+
+    @Test
+    public void boundedBoxTracksVolume(){
+        Item a = item(0, 10), b = item(1, 5);
+        BoundedItemBox box = new BoundedItemBox(30);
+        assert box.store(a, 2);
+        assert !box.store(b, 3);
+        assert box.store(b, 2);
+        assert box.getFreeSpace() == 0;
+        assert box.remove(a, 5) == 2;
+        assert box.removeIfPossible(b, 1);
+        assert box.getCurrentVolume() == 5;
+        assert box.toItemAmountData().stream().map(d -> d.getName()).collect(Collectors.toList())
+                .equals(Arrays.asList("item1"));
+    }
+}
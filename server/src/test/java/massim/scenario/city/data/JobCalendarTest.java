@@ -0,0 +1,34 @@
+package massim.scenario.city.data;
+
+import massim.protocol.scenario.city.data.JobData;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Test scheduling of job events.
+ */
+public class JobCalendarTest {
+
+    @Test
+    public void returnsJobsOfStepOnce(){
+        JobCalendar calendar = new JobCalendar();
+        Job a = new Job(1, null, 3, 10, new ItemBox(), JobData.POSTER_SYSTEM);
+        Job b = new Job(1, null, 3, 12, new ItemBox(), JobData.POSTER_SYSTEM);
+        calendar.schedule(3, a);
+        calendar.schedule(5, b);
+        calendar.schedule(3, b);
+
+        assert calendar.take(2).isEmpty();
+        assert calendar.take(3).equals(Arrays.asList(a, b));
+        assert calendar.take(3).isEmpty();
+        assert calendar.size() == 1;
+
+        calendar.schedule(3, a); // already processed
+        calendar.schedule(4, a);
+        assert calendar.size() == 2;
+        assert calendar.take(4).equals(Arrays.asList(a));
+        assert calendar.take(5).equals(Arrays.asList(b));
+        assert calendar.size() == 0;
+    }
+}
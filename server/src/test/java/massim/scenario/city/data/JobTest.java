@@ -0,0 +1,40 @@
+package massim.scenario.city.data;
+
+import massim.protocol.scenario.city.data.AuctionJobData;
+import massim.protocol.scenario.city.data.JobData;
+import massim.scenario.city.data.facilities.Storage;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * Test caching of job data.
+ */
+public class JobTest {
+
+    @Test
+    public void dataIsOnlyRebuiltAfterChanges(){
+        Location.setProximity(5);
+        Storage storage = new Storage("storage0", new Location(2.3, 48.8), 100, new HashSet<>(Collections.singletonList("A")));
+        Item item = new Item("item0", 10, new HashSet<>(), new HashSet<>());
+        item.setIndex(0);
+        ItemBox required = new ItemBox();
+        required.store(item, 2);
+        AuctionJob auction = new AuctionJob(1000, storage, 1, 20, required, 5, 100);
+
+        JobData data = auction.getPerceptData();
+        long changes = Job.getChanges();
+        assert auction.getPerceptData() == data;
+        assert Job.getChanges() == changes;
+
+        auction.bid(2, new TeamState(0, "A"), 900);
+        assert Job.getChanges() > changes;
+        JobData newData = auction.getPerceptData();
+        assert newData != data;
+        assert ((AuctionJobData) newData).getLowestBid() == 900;
+
+        auction.bid(2, new TeamState(0, "B"), 950); // too high, nothing changes
+        assert auction.getPerceptData() == newData;
+    }
+}
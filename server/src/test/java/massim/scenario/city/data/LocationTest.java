@@ -2,6 +2,9 @@ package massim.scenario.city.data;
 
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.util.Random;
+
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -29,4 +32,21 @@ public class LocationTest {
         Location.setProximity(4);
         assertFalse(l1.equals(l2));
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether the fixed-point coordinates are rounded like their decimal representation.
+     */
+    @Test
+    public void roundsLikeDecimals(){
+        Location.setProximity(5);
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double lat = (random.nextDouble() - .5) * 180;
+            if (i % 2 == 0) lat = Math.round(lat * 1e6) / 1e6; // hit decimal midpoints
+            Location loc = new Location(0, lat);
+            assertTrue(loc.getLat() == BigDecimal.valueOf(lat).setScale(5, BigDecimal.ROUND_HALF_UP).doubleValue());
+        }
+        Location loc = new Location(-0.123455, 51.123455);
+        assertTrue(loc.getFixedLat() == 5112346 && loc.getFixedLon() == -12346);
+    }
+}
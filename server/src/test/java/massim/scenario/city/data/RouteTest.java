@@ -0,0 +1,104 @@
+package massim.scenario.city.data;
+
+import massim.protocol.scenario.city.util.LocationUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing interpolation of route waypoints.
+ */
+public class RouteTest {
+
+    /**
+     * Checks whether the waypoints of air routes are interpolated between start and target.
+     */
+    @Test
+    public void interpolatesAirRoutes(){
+        Location.setProximity(5);
+        Location from = new Location(2.3, 48.85);
+        Location to = new Location(2.31, 48.86);
+        Route route = Route.air(from, to, 200);
+        double fractions = LocationUtil.calculateRange(48.85, 2.3, 48.86, 2.31) / 200;
+
+        List<Location> waypoints = route.getWaypoints();
+        assertEquals((long) Math.floor(fractions) + 1, waypoints.size());
+        assertEquals(new Location(0.01 / fractions + 2.3, 0.01 / fractions + 48.85), waypoints.get(0));
+        assertEquals(to, waypoints.get(waypoints.size() - 1));
+    }
+
+    /**
+     * Checks whether a copied route can be advanced independently of the original.
+     */
+    @Test
+    public void copiesAreIndependent(){
+        Location.setProximity(5);
+        Route route = Route.air(new Location(2.3, 48.85), new Location(2.31, 48.86), 200);
+        route.advance(2);
+        Route copy = route.copy();
+        assertEquals(route.getWaypoints(), copy.getWaypoints());
+        Location next = copy.advance(1);
+        assertEquals(route.getWaypoints().get(0), next);
+        assertEquals(route.getRouteLength() - 1, copy.getRouteLength());
+    }
+
+    /**
+     * Checks whether a route along a polyline yields the cell-sized waypoints of the eagerly computed route.
+     */
+    @Test
+    public void interpolatesPolylines(){
+        Location.setProximity(5);
+        Random random = new Random(3);
+        int cellSize = 100;
+        for (int n = 0; n < 50; n++) {
+            double[] lats = new double[2 + random.nextInt(10)];
+            double[] lons = new double[lats.length];
+            for (int i = 0; i < lats.length; i++) {
+                lats[i] = 48.85 + random.nextDouble() * .01;
+                lons[i] = 2.3 + (i % 3 == 2? lons[i - 1] - 2.3 : random.nextDouble() * .01); // some empty segments
+                if (i % 3 == 2) lats[i] = lats[i - 1];
+            }
+            Location from = new Location(lons[0], lats[0]);
+            Location to = new Location(lons[lats.length - 1], lats[lats.length - 1]);
+            List<Location> expected = eagerRoute(from, to, lats, lons, cellSize);
+
+            Route route = Route.along(from, to, lats, lons, cellSize);
+            assertEquals(expected, route.getWaypoints());
+            for (int passed = 0; !route.isCompleted(); ) {
+                Location loc = route.advance(3);
+                passed = Math.min(passed + 3, expected.size());
+                assertEquals(expected.get(passed - 1), loc);
+                assertEquals(expected.subList(passed, expected.size()), route.getWaypoints());
+            }
+            assertTrue(route.getRouteLength() == 0 && route.advance(3) == null);
+        }
+    }
+
+    /**
+     * The waypoints of a car route as they were computed before routes interpolated them lazily.
+     */
+    private static List<Location> eagerRoute(Location from, Location to, double[] lats, double[] lons, int cellSize){
+        List<Location> route = new ArrayList<>();
+        double remainder = 0;
+        Location loc = null;
+        for (int p = 1; p < lats.length; p++) {
+            double length = LocationUtil.calculateRange(lats[p - 1], lons[p - 1], lats[p], lons[p]);
+            if (length == 0) continue;
+            long i = 0;
+            for (; i * cellSize + remainder < length ; i++) {
+                double offset = i * cellSize + remainder;
+                loc = new Location((lons[p] - lons[p - 1]) * offset / length + lons[p - 1],
+                        (lats[p] - lats[p - 1]) * offset / length + lats[p - 1]);
+                if (!from.equals(loc)) route.add(loc);
+            }
+            remainder = i * cellSize + remainder - length;
+        }
+        if (!to.equals(loc)) route.add(to);
+        return route;
+    }
+}
@@ -0,0 +1,36 @@
+package massim.scenario.city.util;
+
+import org.junit.Test;
+
+/**
+ * Test the computation of strongly connected components.
+ */
+public class RoadComponentsTest {
+
+    @Test
+    public void findsStronglyConnectedComponents(){
+        // 0 <-> 1 -> 2 <-> 3, 3 -> 4 (dead end), 5 (isolated)
+        int[] start = {0, 1, 3, 4, 6, 6, 6};
+        int[] targets = {1, 0, 2, 3, 2, 4};
+        int[] components = RoadComponents.components(start, targets);
+
+        assert components[0] == components[1];
+        assert components[2] == components[3];
+        assert components[1] != components[2];
+        assert components[4] != components[3] && components[5] != components[4];
+    }
+
+    @Test
+    public void handlesLongPaths(){
+        // a cycle far deeper than the call stack would allow for recursion
+        int nodes = 1_000_000;
+        int[] start = new int[nodes + 1];
+        int[] targets = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            start[i + 1] = i + 1;
+            targets[i] = (i + 1) % nodes;
+        }
+        int[] components = RoadComponents.components(start, targets);
+        for (int component : components) assert component == 0;
+    }
+}
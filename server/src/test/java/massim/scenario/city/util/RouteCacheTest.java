@@ -0,0 +1,44 @@
+package massim.scenario.city.util;
+
+import massim.scenario.city.util.RouteCache.Key;
+import massim.scenario.city.util.RouteCache.Polyline;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test caching of routes.
+ */
+public class RouteCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed(){
+        RouteCache cache = new RouteCache(2);
+        AtomicInteger queries = new AtomicInteger();
+        Polyline line = new Polyline(new double[]{1, 2}, new double[]{3, 4});
+        Key a = new Key("car", 1, 2, 3, 4);
+        Key b = new Key("car", 3, 4, 1, 2);
+        Key c = new Key("car", 1, 2, 5, 6);
+
+        assert cache.get(a, () -> {queries.incrementAndGet(); return line;}) == line;
+        assert cache.get(b, () -> {queries.incrementAndGet(); return null;}) == null;
+        assert cache.get(new Key("car", 1, 2, 3, 4), () -> {queries.incrementAndGet(); return null;}) == line;
+        assert cache.get(b, () -> {queries.incrementAndGet(); return line;}) == null; // no route is cached as well
+        assert queries.get() == 2;
+
+        cache.get(c, () -> {queries.incrementAndGet(); return line;}); // evicts a
+        assert cache.size() == 2;
+        cache.get(a, () -> {queries.incrementAndGet(); return line;});
+        assert queries.get() == 4;
+        assert cache.getHits() == 2 && cache.getMisses() == 4;
+    }
+
+    @Test
+    public void canBeDisabled(){
+        RouteCache cache = new RouteCache(0);
+        Polyline line = new Polyline(new double[0], new double[0]);
+        cache.get(new Key("car", 0, 0, 1, 1), () -> line);
+        assert cache.size() == 0;
+        assert cache.get(new Key("car", 0, 0, 1, 1), () -> null) == null;
+    }
+}
@@ -0,0 +1,22 @@
+package massim.util;
+
+import org.junit.Test;
+
+/**
+ * Test the aggregation of durations.
+ */
+public class HistogramTest {
+
+    @Test
+    public void computesPercentilesFromBuckets(){
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 90; i++) histogram.record(500_000); // 0.5 ms
+        for (int i = 0; i < 10; i++) histogram.record(3_000_000); // 3 ms
+
+        assert histogram.getCount() == 100;
+        assert histogram.getPercentile(.5) == 0.512;
+        assert histogram.getPercentile(.99) == 3;
+        histogram.reset();
+        assert histogram.getPercentile(.5) == 0;
+    }
+}